@@ -0,0 +1,40 @@
+package com.sample.paint.bench;
+
+import java.awt.Color;
+import org.openjdk.jmh.infra.Blackhole;
+import com.sample.paint.util.RasterTarget;
+
+/**
+ * Raster target that hands every sample to a JMH blackhole and does nothing
+ * else, so a benchmark measures the algorithm alone.
+ */
+public class BlackholeRasterTarget implements RasterTarget {
+    private final Blackhole blackhole;
+    private final float pixelSize;
+
+    /**
+     * @param pixelSize world units per device pixel reported to the algorithms
+     */
+    public BlackholeRasterTarget(Blackhole blackhole, float pixelSize) {
+        this.blackhole = blackhole;
+        this.pixelSize = pixelSize;
+    }
+
+    @Override
+    public void plot(float x, float y, Color color, float thickness) {
+        blackhole.consume(x);
+        blackhole.consume(y);
+    }
+
+    @Override
+    public void span(float x1, float x2, float y, Color color, float thickness) {
+        blackhole.consume(x1);
+        blackhole.consume(x2);
+        blackhole.consume(y);
+    }
+
+    @Override
+    public float getPixelSize() {
+        return pixelSize;
+    }
+}
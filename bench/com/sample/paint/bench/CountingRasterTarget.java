@@ -0,0 +1,55 @@
+package com.sample.paint.bench;
+
+import java.awt.Color;
+import com.sample.paint.util.RasterTarget;
+
+/**
+ * Raster target that only counts the samples it receives and folds their
+ * coordinates into a checksum, so benchmarks measure the algorithms without any
+ * pixel writes while the JIT still has to compute every sample.
+ */
+public class CountingRasterTarget implements RasterTarget {
+    private final float pixelSize;
+    private long points;
+    private long spans;
+    private long checksum;
+
+    /**
+     * @param pixelSize world units per device pixel reported to the algorithms
+     */
+    public CountingRasterTarget(float pixelSize) {
+        this.pixelSize = pixelSize;
+    }
+
+    @Override
+    public void plot(float x, float y, Color color, float thickness) {
+        points++;
+        checksum += Float.floatToRawIntBits(x) ^ Float.floatToRawIntBits(y);
+    }
+
+    @Override
+    public void span(float x1, float x2, float y, Color color, float thickness) {
+        spans++;
+        checksum += Float.floatToRawIntBits(x1) ^ Float.floatToRawIntBits(x2) ^ Float.floatToRawIntBits(y);
+    }
+
+    @Override
+    public float getPixelSize() {
+        return pixelSize;
+    }
+
+    public long getPointCount() {
+        return points;
+    }
+
+    public long getSpanCount() {
+        return spans;
+    }
+
+    /**
+     * @return a value depending on every sample received so far
+     */
+    public long getChecksum() {
+        return checksum + points + spans;
+    }
+}
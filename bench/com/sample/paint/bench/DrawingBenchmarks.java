@@ -0,0 +1,100 @@
+package com.sample.paint.bench;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import com.sample.paint.util.DrawingAlgorithms;
+import com.sample.paint.util.RasterTarget;
+import com.sample.paint.util.SoftwareRasterTarget;
+
+/**
+ * The rasterization routines drawing a shape centered on the origin, for every
+ * combination of shape size, stroke thickness and zoom, into one of three
+ * targets: a blackhole (the algorithm alone), a counting target (the algorithm
+ * plus a cheap use of every sample) and a software framebuffer (the algorithm
+ * plus pixel writes).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class DrawingBenchmarks {
+    private static final Color COLOR = new Color(0x3366cc);
+
+    @Param({ "noop", "counting", "software" })
+    public String target;
+
+    private RasterTarget raster;
+
+    @Setup(Level.Trial)
+    public void setUp(ShapeParams shape, Blackhole blackhole) {
+        switch (target) {
+            case "noop":
+                raster = new BlackholeRasterTarget(blackhole, shape.pixelSize);
+                break;
+            case "counting":
+                raster = new CountingRasterTarget(shape.pixelSize);
+                break;
+            case "software":
+                SoftwareRasterTarget software = new SoftwareRasterTarget(ShapeParams.CANVAS, ShapeParams.CANVAS);
+                float extent = 1 / shape.zoom;
+                software.setView(-extent, extent, -extent, extent);
+                raster = software;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown target: " + target);
+        }
+    }
+
+    @Benchmark
+    public void bresenhamLine(ShapeParams shape) {
+        float h = shape.h;
+        DrawingAlgorithms.bresenhamLine(raster, -h, -h * 0.6f, h, h * 0.6f, COLOR, shape.thickness);
+    }
+
+    @Benchmark
+    public void scanLineFillRect(ShapeParams shape) {
+        float h = shape.h;
+        DrawingAlgorithms.scanLineFillRect(raster, -h, -h * 0.6f, h, h * 0.6f, COLOR, shape.thickness);
+    }
+
+    @Benchmark
+    public void midpointCircle(ShapeParams shape) {
+        DrawingAlgorithms.midpointCircle(raster, 0, 0, shape.h, COLOR, shape.thickness, false);
+    }
+
+    @Benchmark
+    public void midpointCircleFilled(ShapeParams shape) {
+        DrawingAlgorithms.midpointCircle(raster, 0, 0, shape.h, COLOR, shape.thickness, true);
+    }
+
+    @Benchmark
+    public void midpointEllipse(ShapeParams shape) {
+        DrawingAlgorithms.midpointEllipse(raster, 0, 0, shape.h, shape.h * 0.6f, COLOR, shape.thickness, false);
+    }
+
+    @Benchmark
+    public void midpointEllipseFilled(ShapeParams shape) {
+        DrawingAlgorithms.midpointEllipse(raster, 0, 0, shape.h, shape.h * 0.6f, COLOR, shape.thickness, true);
+    }
+
+    @Benchmark
+    public void fillTriangle(ShapeParams shape) {
+        float h = shape.h;
+        DrawingAlgorithms.fillTriangle(raster, -h, -h, h, -h * 0.6f, -h * 0.2f, h, COLOR, shape.thickness);
+    }
+}
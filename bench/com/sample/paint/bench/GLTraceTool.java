@@ -0,0 +1,348 @@
+package com.sample.paint.bench;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.GLCapabilities;
+import com.jogamp.opengl.GLContext;
+import com.jogamp.opengl.GLDrawableFactory;
+import com.jogamp.opengl.GLOffscreenAutoDrawable;
+import com.jogamp.opengl.GLProfile;
+import com.sample.paint.model.Bounds;
+import com.sample.paint.util.GLRenderer;
+import com.sample.paint.util.GLTrace;
+import com.sample.paint.util.GLTraceRecorder;
+import com.sample.paint.util.GLTraceStats;
+import com.sample.paint.util.PointBatch;
+import com.sample.paint.util.SceneFile;
+import com.sample.paint.util.SceneRenderer;
+
+/**
+ * Captures, inspects, replays and compares GL traces, e.g. to catch a change
+ * that silently multiplies draw calls or state changes.
+ *
+ *   capture [-size WxH] [-zoom Z] drawing.pdraw out.gltrace
+ *       record the frame that draws the drawing's committed shapes, as the app does
+ *   stats trace.gltrace
+ *       calls per function, draw calls, vertices, glBegin/glEnd pairs, redundant state changes
+ *   replay [-backend gl|null] [-n N] trace.gltrace
+ *       re-issue every frame N times and report the time per frame
+ *   compare [-tolerance T] baseline.gltrace current.gltrace
+ *       compare per frame totals; exits with status 1 if calls, draw calls or
+ *       redundant state changes grew by more than T (default 0.1 = 10%)
+ *
+ * The gl backend replays in an offscreen JOGL context; without a GPU, Mesa's
+ * software rasterizer serves (LIBGL_ALWAYS_SOFTWARE=1). The null backend needs
+ * no GL at all: it resolves and prepares every call but issues nothing, so it
+ * checks that a trace can be replayed and reports its statistics, untimed.
+ * Arrays and buffers are not in the trace, so they are replayed zero-filled at
+ * their recorded size; the call sequence and counts are exact.
+ */
+public class GLTraceTool {
+    private static final int ARRAY_LENGTH = 256; // replayed array arguments, whose length the trace lacks
+
+    /**
+     * A call resolved to its GL2 method, with arguments ready to pass
+     */
+    private static final class PreparedCall {
+        final String name;
+        final Method method;
+        final Object[] args;
+
+        PreparedCall(String name, Method method, Object[] args) {
+            this.name = name;
+            this.method = method;
+            this.args = args;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        // Options take a value; everything else is a file
+        Map<String, String> options = new HashMap<>();
+        List<String> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("-") && i + 1 < args.length) {
+                options.put(args[i], args[++i]);
+            } else {
+                files.add(args[i]);
+            }
+        }
+
+        switch (args[0]) {
+            case "capture":
+                requireFiles(files, 2);
+                capture(Paths.get(files.get(0)), Paths.get(files.get(1)), options.getOrDefault("-size", "1024x768"),
+                        Float.parseFloat(options.getOrDefault("-zoom", "1")));
+                break;
+            case "stats":
+                requireFiles(files, 1);
+                System.out.print(GLTraceStats.of(GLTrace.read(Paths.get(files.get(0)))).getSummary());
+                break;
+            case "replay":
+                requireFiles(files, 1);
+                replay(GLTrace.read(Paths.get(files.get(0))), options.getOrDefault("-backend", "gl"),
+                        Integer.parseInt(options.getOrDefault("-n", "20")));
+                break;
+            case "compare": {
+                requireFiles(files, 2);
+                GLTraceStats baseline = GLTraceStats.of(GLTrace.read(Paths.get(files.get(0))));
+                GLTraceStats current = GLTraceStats.of(GLTrace.read(Paths.get(files.get(1))));
+                System.out.print(GLTraceStats.compare(baseline, current));
+                List<String> regressions = GLTraceStats.regressions(baseline, current,
+                        Double.parseDouble(options.getOrDefault("-tolerance", "0.1")));
+                for (String regression : regressions) {
+                    System.out.println("REGRESSION: " + regression);
+                }
+                if (!regressions.isEmpty()) {
+                    System.exit(1);
+                }
+                break;
+            }
+            default:
+                usage();
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: GLTraceTool capture [-size WxH] [-zoom Z] drawing.pdraw out.gltrace");
+        System.out.println("       GLTraceTool stats trace.gltrace");
+        System.out.println("       GLTraceTool replay [-backend gl|null] [-n N] trace.gltrace");
+        System.out.println("       GLTraceTool compare [-tolerance T] baseline.gltrace current.gltrace");
+    }
+
+    private static void requireFiles(List<String> files, int count) {
+        if (files.size() != count) {
+            throw new IllegalArgumentException("Expected " + count + " file arguments, got " + files);
+        }
+    }
+
+    /**
+     * Render a drawing's committed shapes offscreen, the way the app fills its
+     * scene layer, and save the calls
+     */
+    private static void capture(Path drawing, Path out, String size, float zoom) throws Exception {
+        SceneFile.Contents contents = SceneFile.read(drawing);
+        int width = Integer.parseInt(size.substring(0, size.indexOf('x')));
+        int height = Integer.parseInt(size.substring(size.indexOf('x') + 1));
+
+        GLOffscreenAutoDrawable drawable = createDrawable(width, height);
+        try {
+            GL2 gl = drawable.getGL().getGL2();
+            if (!gl.isGL4bc()) {
+                throw new IllegalStateException("Capturing needs a desktop compatibility profile context, got " + gl);
+            }
+            GLTraceRecorder recorder = new GLTraceRecorder(gl);
+            gl = recorder.getGL();
+
+            GLRenderer.setupViewport(gl, width, height, zoom, 0, 0);
+            Bounds view = GLRenderer.getViewBounds(width, height, zoom, 0, 0);
+            GLRenderer.clearScreen(gl, contents.getBackground());
+            PointBatch batch = GLRenderer.beginPointBatch(gl);
+            new SceneRenderer().draw(batch, contents.getShapes(), view, view.getHeight() / height);
+            batch.flush();
+            gl.glFinish();
+            recorder.endFrame();
+
+            recorder.getTrace().write(out);
+            System.out.print(GLTraceStats.of(recorder.getTrace()).getSummary());
+        } finally {
+            drawable.getContext().release();
+            drawable.destroy();
+        }
+    }
+
+    private static void replay(GLTrace trace, String backend, int repeats) throws Exception {
+        System.out.print(GLTraceStats.of(trace).getSummary());
+
+        Map<String, Integer> unresolved = new TreeMap<>();
+        Map<String, Method> methods = new HashMap<>();
+        List<List<PreparedCall>> frames = new ArrayList<>();
+        for (List<GLTrace.Call> frame : trace.getFrames()) {
+            List<PreparedCall> prepared = new ArrayList<>(frame.size());
+            for (GLTrace.Call call : frame) {
+                Method method = methods.computeIfAbsent(signature(call), key -> resolve(call));
+                if (method == null) {
+                    unresolved.merge(call.getName(), 1, Integer::sum);
+                } else {
+                    prepared.add(new PreparedCall(call.getName(), method, prepareArguments(method, call)));
+                }
+            }
+            frames.add(prepared);
+        }
+        if (!unresolved.isEmpty()) {
+            System.out.println("Not replayable, skipped: " + unresolved);
+        }
+
+        if (backend.equals("null")) {
+            int prepared = 0;
+            for (List<PreparedCall> frame : frames) {
+                prepared += frame.size();
+            }
+            System.out.println("Null backend: " + prepared + " calls resolved and prepared; nothing issued, so nothing timed");
+            return;
+        } else if (!backend.equals("gl")) {
+            throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+
+        GLOffscreenAutoDrawable drawable = createDrawable(1024, 768);
+        try {
+            GL2 gl = drawable.getGL().getGL2();
+            System.out.println("Replaying on " + gl.glGetString(GL2.GL_RENDERER) + ", " + gl.glGetString(GL2.GL_VERSION));
+            Map<String, Integer> failures = new TreeMap<>();
+            long calls = 0;
+            for (int frame = 0; frame < frames.size(); frame++) {
+                // One untimed pass warms up the driver and the reflective calls
+                calls += replayFrame(gl, frames.get(frame), failures);
+                double[] millis = new double[repeats];
+                for (int i = 0; i < repeats; i++) {
+                    long start = System.nanoTime();
+                    calls += replayFrame(gl, frames.get(frame), failures);
+                    millis[i] = (System.nanoTime() - start) / 1e6;
+                }
+                Arrays.sort(millis);
+                System.out.printf("Frame %d: %d calls, median %.3f ms, min %.3f ms, max %.3f ms over %d runs%n",
+                        frame, frames.get(frame).size(), millis[repeats / 2], millis[0], millis[repeats - 1], repeats);
+            }
+            System.out.println("Replayed " + calls + " calls");
+            if (!failures.isEmpty()) {
+                System.out.println("Failed calls: " + failures);
+            }
+        } finally {
+            drawable.getContext().release();
+            drawable.destroy();
+        }
+    }
+
+    /**
+     * @return calls issued
+     */
+    private static int replayFrame(GL2 gl, List<PreparedCall> frame, Map<String, Integer> failures)
+            throws IllegalAccessException {
+        for (PreparedCall call : frame) {
+            try {
+                call.method.invoke(gl, call.args);
+            } catch (InvocationTargetException e) {
+                failures.merge(call.name + ": " + e.getCause().getMessage(), 1, Integer::sum);
+            }
+        }
+        // Wait for the frame to be rendered, not just queued
+        gl.glFinish();
+        return frame.size();
+    }
+
+    private static GLOffscreenAutoDrawable createDrawable(int width, int height) {
+        GLProfile profile = GLProfile.get(GLProfile.GL2);
+        GLCapabilities capabilities = new GLCapabilities(profile);
+        capabilities.setOnscreen(false);
+        GLOffscreenAutoDrawable drawable = GLDrawableFactory.getFactory(profile)
+                .createOffscreenAutoDrawable(null, capabilities, null, width, height);
+        drawable.display(); // creates the context
+        if (drawable.getContext().makeCurrent() == GLContext.CONTEXT_NOT_CURRENT) {
+            throw new IllegalStateException("Cannot make the offscreen GL context current");
+        }
+        return drawable;
+    }
+
+    /**
+     * @return the name and argument types, which identify the GL2 method called
+     */
+    private static String signature(GLTrace.Call call) {
+        StringBuilder signature = new StringBuilder(call.getName());
+        for (Object arg : call.getArgs()) {
+            signature.append(' ').append(arg instanceof GLTrace.Opaque
+                    ? ((GLTrace.Opaque) arg).getType() : arg.getClass().getSimpleName());
+        }
+        return signature.toString();
+    }
+
+    /**
+     * @return the GL2 method the call was made to, or null if there is none
+     */
+    private static Method resolve(GLTrace.Call call) {
+        Object[] args = call.getArgs();
+        for (Method method : GL2.class.getMethods()) {
+            if (!method.getName().equals(call.getName()) || method.getParameterCount() != args.length) {
+                continue;
+            }
+            Class<?>[] types = method.getParameterTypes();
+            boolean matches = true;
+            for (int i = 0; i < types.length && matches; i++) {
+                matches = accepts(types[i], args[i]);
+            }
+            if (matches) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static boolean accepts(Class<?> type, Object arg) {
+        if (arg instanceof GLTrace.Opaque) {
+            return type.getName().equals(((GLTrace.Opaque) arg).getType());
+        }
+        return type == int.class && arg instanceof Integer
+                || type == float.class && arg instanceof Float
+                || type == double.class && arg instanceof Double
+                || type == long.class && arg instanceof Long
+                || type == boolean.class && arg instanceof Boolean
+                || type == byte.class && arg instanceof Byte
+                || type == short.class && arg instanceof Short;
+    }
+
+    /**
+     * Stand in zero-filled arrays and direct buffers for the contents the trace lacks
+     */
+    private static Object[] prepareArguments(Method method, GLTrace.Call call) {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = call.getArgs().clone();
+        for (int i = 0; i < args.length; i++) {
+            if (!(args[i] instanceof GLTrace.Opaque)) {
+                continue;
+            }
+            GLTrace.Opaque opaque = (GLTrace.Opaque) args[i];
+            if (opaque.getKind().equals("null")) {
+                args[i] = null;
+            } else if (types[i].isArray()) {
+                args[i] = Array.newInstance(types[i].getComponentType(), ARRAY_LENGTH);
+            } else if (Buffer.class.isAssignableFrom(types[i])) {
+                args[i] = directBuffer(opaque.getKind().isEmpty() ? types[i].getName() : opaque.getKind(),
+                        Math.max(opaque.getSize(), 0));
+            } else {
+                args[i] = null;
+            }
+        }
+        return args;
+    }
+
+    private static Buffer directBuffer(String kind, int elements) {
+        ByteBuffer bytes = ByteBuffer.allocateDirect(elements * 8).order(ByteOrder.nativeOrder());
+        if (kind.contains("Float")) {
+            return bytes.asFloatBuffer().limit(elements);
+        } else if (kind.contains("Int")) {
+            return bytes.asIntBuffer().limit(elements);
+        } else if (kind.contains("Short")) {
+            return bytes.asShortBuffer().limit(elements);
+        } else if (kind.contains("Double")) {
+            return bytes.asDoubleBuffer().limit(elements);
+        } else if (kind.contains("Long")) {
+            return bytes.asLongBuffer().limit(elements);
+        }
+        return bytes.limit(elements);
+    }
+}
@@ -0,0 +1,122 @@
+package com.sample.paint.bench;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.sample.paint.model.BrushStroke;
+import com.sample.paint.model.Circle;
+import com.sample.paint.model.Ellipse;
+import com.sample.paint.model.FillTool;
+import com.sample.paint.model.Line;
+import com.sample.paint.model.Rectangle;
+import com.sample.paint.model.Shape;
+import com.sample.paint.model.Triangle;
+
+/**
+ * Shape.isPointInside for a grid of points over the shape's bounds and some
+ * margin, with the tolerance the renderer pads strokes by at that zoom. Scores
+ * are per query.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class HitTestBenchmarks {
+    private static final int QUERY_GRID = 32; // queries per invocation: QUERY_GRID squared
+    private static final int STROKE_SAMPLES = 256;
+    private static final Color COLOR = new Color(0x3366cc);
+
+    @Param({ "Line", "Rectangle", "Circle", "Ellipse", "Triangle", "BrushStroke", "FillTool" })
+    public String shapeType;
+
+    private Shape shape;
+    private float tolerance;
+    private float[] queries;
+
+    @Setup(Level.Trial)
+    public void setUp(ShapeParams params) {
+        float h = params.h;
+        float thickness = params.thickness;
+        switch (shapeType) {
+            case "Line":
+                shape = new Line(-h, -h * 0.6f, h, h * 0.6f, COLOR, thickness);
+                break;
+            case "Rectangle":
+                shape = new Rectangle(-h, -h * 0.6f, h, h * 0.6f, COLOR, false, thickness);
+                break;
+            case "Circle":
+                shape = Circle.fromCenter(0, 0, h, COLOR, false, thickness);
+                break;
+            case "Ellipse":
+                shape = Ellipse.fromCenter(0, 0, h, h * 0.6f, COLOR, false, thickness);
+                break;
+            case "Triangle":
+                shape = Triangle.fromVertices(-h, -h, h, -h * 0.6f, -h * 0.2f, h, COLOR, false, thickness);
+                break;
+            case "BrushStroke":
+                shape = brushStroke(h, thickness);
+                break;
+            case "FillTool":
+                shape = new FillTool(0, 0, COLOR);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown shape: " + shapeType);
+        }
+        tolerance = shape.getStrokePadding(params.pixelSize);
+        queries = queryGrid(h * 1.25f);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERY_GRID * QUERY_GRID)
+    public int isPointInside() {
+        int hits = 0;
+        for (int i = 0; i < queries.length; i += 2) {
+            if (shape.isPointInside(queries[i], queries[i + 1], tolerance)) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * A wavy stroke across the half extent, like a quick freehand line
+     */
+    private static BrushStroke brushStroke(float h, float thickness) {
+        float[] coords = new float[STROKE_SAMPLES * 2];
+        for (int i = 0; i < STROKE_SAMPLES; i++) {
+            float t = (float) i / (STROKE_SAMPLES - 1);
+            coords[i * 2] = -h + 2 * h * t;
+            coords[i * 2 + 1] = h * 0.3f * (float) Math.sin(t * Math.PI * 4);
+        }
+        return new BrushStroke(coords, STROKE_SAMPLES, COLOR, thickness, BrushStroke.DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * @return interleaved x, y of QUERY_GRID squared points covering -extent..extent
+     */
+    private static float[] queryGrid(float extent) {
+        float[] grid = new float[QUERY_GRID * QUERY_GRID * 2];
+        int n = 0;
+        for (int row = 0; row < QUERY_GRID; row++) {
+            for (int column = 0; column < QUERY_GRID; column++) {
+                grid[n++] = -extent + 2 * extent * (column + 0.5f) / QUERY_GRID;
+                grid[n++] = -extent + 2 * extent * (row + 0.5f) / QUERY_GRID;
+            }
+        }
+        return grid;
+    }
+}
@@ -0,0 +1,69 @@
+package com.sample.paint.bench;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.sample.paint.util.GLReadBufferUtil;
+import com.sample.paint.util.SoftwareRasterTarget;
+
+/**
+ * GLReadBufferUtil turning read pixels into an image: wrapping the copy as a
+ * BufferedImage, and the flipped copy out of the read buffer followed by the
+ * wrap. SoftwareRasterTarget.toBufferedImage is the software path's
+ * equivalent. The parameter is the canvas size in pixels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ReadbackBenchmarks {
+    @Param({ "256", "1024", "2048" })
+    public int size;
+
+    private ByteBuffer read;
+    private GLReadBufferUtil reader;
+    private SoftwareRasterTarget software;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        read = ByteBuffer.allocateDirect(size * size * 3);
+        for (int i = 0; i < read.capacity(); i++) {
+            read.put(i, (byte) (i * 31));
+        }
+        reader = new GLReadBufferUtil(false);
+        reader.setPixels(read, size, size, true);
+        software = new SoftwareRasterTarget(size, size);
+        software.clear(new Color(0x3366cc));
+    }
+
+    @Benchmark
+    public BufferedImage toBufferedImage() {
+        return reader.toBufferedImage();
+    }
+
+    @Benchmark
+    public BufferedImage toBufferedImageFlipped() {
+        reader.setPixels(read, size, size, true);
+        return reader.toBufferedImage();
+    }
+
+    @Benchmark
+    public BufferedImage softwareToBufferedImage() {
+        return software.toBufferedImage();
+    }
+}
@@ -0,0 +1,38 @@
+package com.sample.paint.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Shape size, stroke thickness and zoom shared by the drawing and hit test
+ * benchmarks. Sizes are in device pixels at zoom 1 on a 1024 x 1024 canvas
+ * showing world coordinates -1..1, the app's default view.
+ */
+@State(Scope.Thread)
+public class ShapeParams {
+    static final int CANVAS = 1024;
+
+    @Param({ "16", "128", "1024" })
+    public int size;
+
+    @Param({ "1", "4", "16" })
+    public float thickness;
+
+    @Param({ "0.25", "1", "4" })
+    public float zoom;
+
+    /** Half extent of the shape in world units */
+    float h;
+
+    /** World units per device pixel at this zoom */
+    float pixelSize;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        h = size / (float) CANVAS;
+        pixelSize = 2f / CANVAS / zoom;
+    }
+}
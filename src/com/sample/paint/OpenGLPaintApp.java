@@ -2,41 +2,67 @@ package com.sample.paint;
 
 import com.jogamp.opengl.*;
 import com.jogamp.opengl.awt.GLCanvas;
-import com.jogamp.opengl.util.awt.AWTGLReadBufferUtil;
 import com.sample.paint.model.*;
 import com.sample.paint.model.Point;
 import com.sample.paint.model.Rectangle;
 import com.sample.paint.model.Shape;
 import com.sample.paint.ui.ShapesToolbar;
-import com.sample.paint.util.GLRenderer;
-import com.sample.paint.util.DrawingAlgorithms;
+import com.sample.paint.util.FrameStats;
 import com.sample.paint.util.GLReadBufferUtil;
+import com.sample.paint.util.GLRenderer;
+import com.sample.paint.util.GLTrace;
+import com.sample.paint.util.GLTraceRecorder;
+import com.sample.paint.util.GLTraceStats;
+import com.sample.paint.util.InputRingBuffer;
+import com.sample.paint.util.OffscreenLayer;
+import com.sample.paint.util.OverdrawRasterTarget;
+import com.sample.paint.util.PersistentVector;
+import com.sample.paint.util.PointBatch;
+import com.sample.paint.util.ProfilingRasterTarget;
+import com.sample.paint.util.RenderScheduler;
+import com.sample.paint.util.SceneExporter;
+import com.sample.paint.util.SceneFile;
+import com.sample.paint.util.SceneJournal;
+import com.sample.paint.util.SceneRenderer;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.OutputStream;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionListener {
   private GLCanvas canvas;
   private float startX, startY, endX, endY;
   private boolean drawing = false;
   private String currentShape = "Line";
-  private List<com.sample.paint.model.Shape> shapes = new ArrayList<>();
-  private List<com.sample.paint.model.Point> brushPoints = new ArrayList<>();
+  // Edited on the event thread; the renderer and exporters read immutable snapshots of it
+  private Scene scene;
+  // Spatial index over shapes for eraser and fill-tool hit testing
+  private final ShapeIndex shapeIndex = new ShapeIndex();
+  // Brush or point-eraser stroke in progress, rasterized incrementally onto liveLayer
+  private final LiveStroke liveStroke = new LiveStroke();
+  // Drag samples for the live stroke, queued by the event thread and drained once per frame
+  private final InputRingBuffer strokeInput = new InputRingBuffer(STROKE_INPUT_CAPACITY);
+  private final InputRingBuffer.SampleSink strokeSink = (coords, times, from, count) -> liveStroke.addAll(coords, from, count);
   private float eraserSize = 0.05f;
   private Color currentColor = Color.RED;
   private boolean isFilled = false;
   private float thickness = 1.0f;
   private ShapesToolbar toolbar;
-  private Color backgroundColor = Color.WHITE;
-  private List<com.sample.paint.model.Point> eraserPoints = new ArrayList<>();
   private String eraserMode = "point"; // Default to point eraser
+  private boolean eraseEditOpen; // a shape-eraser drag's undo group is open
   // Track current mouse position for showing brush/eraser borders
   private float currentMouseX = 0;
   private float currentMouseY = 0;
@@ -58,6 +84,51 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
   // Status bar reference
   private JLabel statusLabel;
   private JScrollPane scrollableToolbar;
+  // Retained rendering of the committed shapes; rebuilt only when the scene or view changes
+  private final OffscreenLayer sceneLayer = new OffscreenLayer();
+  // Transparent overlay accumulating the live stroke between frames
+  private final OffscreenLayer liveLayer = new OffscreenLayer();
+  // Frame-rate cap for on-demand rendering
+  private static final int MAX_FPS = 60;
+  private static final long STATUS_UPDATE_NANOS = 250_000_000L; // refresh frame stats in the status bar 4 times a second
+  private static final int STROKE_INPUT_CAPACITY = 4096; // samples; seconds of pen input at several hundred Hz
+  private RenderScheduler renderScheduler;
+  // Draws committed shapes, culling those outside the current view
+  private final SceneRenderer sceneRenderer = new SceneRenderer();
+  private Bounds viewBounds;
+  private float pixelSize;
+  // Frame statistics, shown in the status bar, on the F3 overlay and as Flight Recorder events
+  private final FrameStats frameStats = new FrameStats(GLRenderer.getPointBatch());
+  private volatile boolean showHud;
+  private volatile long lastDragNanos; // System.nanoTime() base, set by the event thread
+  private long presentedDragNanos;     // render thread only
+  private long lastStatusUpdateNanos;  // render thread only
+
+  // Rasterization profiler toggled with F9; the last profiled frame backs the summary and heatmap export
+  private volatile boolean profiling;
+  private volatile ProfilingRasterTarget lastProfile;
+
+  // F4 records the GL calls of the next frame into the trace directory
+  private static final Path TRACE_DIR = Paths.get(System.getProperty("user.home"), ".opengl-paint", "traces");
+  private volatile boolean captureTrace;
+
+  // Save Canvas reads the framebuffer back through a pixel buffer object over the following frames
+  private final GLReadBufferUtil readBufferUtil = new GLReadBufferUtil(true);
+  private volatile File canvasSaveRequest; // set by the event thread, taken by the render thread
+  private File canvasSaveFile;             // render thread only; the file of the read in flight
+  private boolean savingCanvas;            // event thread only; until the image is written
+  private int canvasCompressionLevel;      // event thread only
+
+  // Deflate levels offered for the PNG encoder, from fastest to smallest file
+  private static final int[] COMPRESSION_LEVELS = { 1, 6, 9 };
+  private static final String[] COMPRESSION_NAMES = { "Fastest", "Default", "Smallest file" };
+
+  // Autosave journal; null if the autosave directory is unusable or locked by another instance
+  private static final String UNDO_MEMORY_PROPERTY = "paint.undoMemoryMB";
+  private static final Path AUTOSAVE_DIR = Paths.get(System.getProperty("user.home"), ".opengl-paint", "autosave");
+  private volatile SceneJournal journal;
+  private FileLock autosaveLock;
+  private volatile String autosaveProblem; // why autosave is off from the start, shown in the status bar
 
   public OpenGLPaintApp() {
     setTitle("OpenGL Algorithm-Based Paint Application");
@@ -65,18 +136,27 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     setLayout(new BorderLayout());
 
+    // Restore the previous session, then journal every change from here on
+    openScene();
+    addWindowListener(new WindowAdapter() {
+        @Override
+        public void windowClosing(WindowEvent e) {
+            closeJournal();
+        }
+    });
+
     // Initialize OpenGL canvas
     GLProfile profile = GLProfile.get(GLProfile.GL2);
     GLCapabilities capabilities = new GLCapabilities(profile);
     canvas = new GLCanvas(capabilities);
     canvas.addGLEventListener(this);
 
-    // Set up animator to redraw canvas at regular intervals
-    final com.jogamp.opengl.util.FPSAnimator animator = new com.jogamp.opengl.util.FPSAnimator(canvas, 30);
-    animator.start();
+    // Render on demand: frames are scheduled only when a layer is marked dirty
+    renderScheduler = new RenderScheduler(canvas, MAX_FPS);
 
     // Set up UI components
     toolbar = new ShapesToolbar(this);
+    updateUndoButtons();
     toolbar.addThicknessListener(e -> {
       thickness = toolbar.getThickness();
       if (currentShape.equals("Eraser")) {
@@ -96,7 +176,7 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
         @Override
         public void componentResized(ComponentEvent e) {
             // Update canvas and trigger display refresh
-            canvas.display();
+            requestRender();
         }
     });
 
@@ -134,12 +214,14 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
         }
         break;
       case "Background Color":
-        Color selectedBgColor = JColorChooser.showDialog(this, "Pick Background Color", backgroundColor);
+        Color selectedBgColor = JColorChooser.showDialog(this, "Pick Background Color", scene.getBackground());
         if (selectedBgColor != null) {
-          backgroundColor = selectedBgColor;
+          // The color change and the eraser strokes it recolors are undone together
+          scene.beginEdit();
+          scene.setBackground(selectedBgColor);
           // Update any existing eraser strokes to use the new background color
           updateEraserStrokes();
-          canvas.display();
+          scene.endEdit();
         }
         break;
       case "Fill":
@@ -181,6 +263,21 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
       case "SaveCanvas":
         saveCanvasToImage();
         break;
+      case "ExportImage":
+        exportImage();
+        break;
+      case "OpenDrawing":
+        openDrawing();
+        break;
+      case "SaveDrawing":
+        saveDrawing();
+        break;
+      case "Undo":
+        scene.undo();
+        break;
+      case "Redo":
+        scene.redo();
+        break;
       // Handle toolbar state changes
       case "ToolbarFloating":
         handleToolbarStateChange(true);
@@ -204,6 +301,9 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
         }
         break;
     }
+
+    // Tool changes can show or hide the cursor border
+    requestRender();
   }
 
   /**
@@ -216,13 +316,13 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
       getContentPane().remove(scrollableToolbar);
       validate();
       pack();
-      canvas.display();
+      requestRender();
     } else {
       // Toolbar was docked back - add it to the layout again
       add(scrollableToolbar, BorderLayout.WEST);
       validate();
       pack();
-      canvas.display();
+      requestRender();
     }
   }
 
@@ -238,19 +338,79 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
         JOptionPane.YES_NO_OPTION);
 
     if (confirm == JOptionPane.YES_OPTION) {
-      shapes.clear(); // Remove all shapes
-      canvas.display(); // Refresh display
+      scene.clear(); // Remove all shapes; listeners refresh the display
+    }
+  }
+
+  /**
+   * Save the shapes and background to an editable drawing file
+   */
+  private void saveDrawing() {
+    JFileChooser fileChooser = new JFileChooser();
+    fileChooser.setDialogTitle("Save Drawing");
+    fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+        "Drawings", SceneFile.EXTENSION));
+
+    if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+      File file = fileChooser.getSelectedFile();
+      if (!file.getPath().toLowerCase().endsWith("." + SceneFile.EXTENSION)) {
+        file = new File(file.getPath() + "." + SceneFile.EXTENSION);
+      }
+      try {
+        SceneSnapshot snapshot = scene.getSnapshot();
+        SceneFile.write(file.toPath(), snapshot.getShapes(), snapshot.getBackground());
+      } catch (IOException e) {
+        JOptionPane.showMessageDialog(this,
+            "Error saving drawing: " + e.getMessage(),
+            "Save Error", JOptionPane.ERROR_MESSAGE);
+      }
     }
   }
 
   /**
-   * Save the canvas as an image file
+   * Replace the current shapes and background with those of a drawing file
+   */
+  private void openDrawing() {
+    JFileChooser fileChooser = new JFileChooser();
+    fileChooser.setDialogTitle("Open Drawing");
+    fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+        "Drawings", SceneFile.EXTENSION));
+
+    if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+      try {
+        SceneFile.Contents drawing = SceneFile.read(fileChooser.getSelectedFile().toPath());
+        scene.load(drawing.getShapes(), drawing.getBackground());
+      } catch (IOException e) {
+        JOptionPane.showMessageDialog(this,
+            "Error opening drawing: " + e.getMessage(),
+            "Open Error", JOptionPane.ERROR_MESSAGE);
+      }
+    }
+  }
+
+  /**
+   * Save the canvas as an image file. The render thread reads the next frame back
+   * without the brush border or HUD and without stalling on the GPU; the image is
+   * encoded and written on a background thread.
    */
   private void saveCanvasToImage() {
+    if (savingCanvas) {
+      JOptionPane.showMessageDialog(this,
+          "The canvas is still being saved. Please try again when it is done.",
+          "Save Canvas", JOptionPane.INFORMATION_MESSAGE);
+      return;
+    }
+
     JFileChooser fileChooser = new JFileChooser();
     fileChooser.setDialogTitle("Save Canvas as Image");
     fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
         "PNG Images", "png"));
+    JComboBox<String> compressionBox = new JComboBox<>(COMPRESSION_NAMES);
+    compressionBox.setSelectedIndex(1);
+    JPanel compressionPanel = new JPanel(new BorderLayout(0, 5));
+    compressionPanel.add(new JLabel("Compression:"), BorderLayout.NORTH);
+    compressionPanel.add(compressionBox, BorderLayout.CENTER);
+    fileChooser.setAccessory(compressionPanel);
 
     if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
       File file = fileChooser.getSelectedFile();
@@ -260,66 +420,238 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
       }
 
       // Make sure canvas is properly sized before saving
-      if (canvas.getWidth() <= 0 || canvas.getHeight() <= 0) {
+      if (canvas.getSurfaceWidth() <= 0 || canvas.getSurfaceHeight() <= 0) {
         JOptionPane.showMessageDialog(this,
             "Canvas has invalid dimensions. Please resize the window and try again.",
             "Save Error", JOptionPane.ERROR_MESSAGE);
         return;
       }
 
-      // Store current border visibility state
-      boolean originalBorderState = showBrushBorder;
+      savingCanvas = true;
+      canvasCompressionLevel = COMPRESSION_LEVELS[compressionBox.getSelectedIndex()];
+      canvasSaveRequest = file;
+      requestRender();
+    }
+  }
 
-      try {
-        // Temporarily hide brush/eraser borders for clean screenshot
-        showBrushBorder = false;
+  /**
+   * Start or collect the Save Canvas readback; called by display with the frame
+   * drawn up to, but not including, the brush border and HUD
+   */
+  private void readCanvasForSave(GL2 gl) {
+    // Collect a read started on an earlier frame, or keep polling until the GPU is done
+    if (canvasSaveFile != null) {
+      File file = canvasSaveFile;
+      if (readBufferUtil.finishRead(gl)) {
+        canvasSaveFile = null;
+        SwingUtilities.invokeLater(() -> writeCanvasImage(file));
+      } else if (readBufferUtil.isReadPending()) {
+        requestRender();
+      } else {
+        canvasSaveFile = null;
+        SwingUtilities.invokeLater(() -> canvasSaveFailed(
+            "Failed to read pixels from canvas. The canvas may be too small or not properly initialized."));
+      }
+      return;
+    }
 
-        // Refresh display to apply changes
-        canvas.display();
+    File file = canvasSaveRequest;
+    if (file == null) {
+      return;
+    }
+    canvasSaveRequest = null;
+    if (readBufferUtil.startRead(gl, true)) {
+      canvasSaveFile = file;
+      requestRender();
+    } else {
+      SwingUtilities.invokeLater(() -> canvasSaveFailed(
+          "Failed to read pixels from canvas. The canvas may be too small or not properly initialized."));
+    }
+  }
 
-        // Ensure GL context is current
-        canvas.getContext().makeCurrent();
+  /**
+   * Encode the pixels read back for Save Canvas to a PNG file on a background thread;
+   * the next canvas save may read back once this one is finished or cancelled
+   */
+  private void writeCanvasImage(File file) {
+    int compressionLevel = canvasCompressionLevel;
+    exportInBackground("Saving canvas", file,
+        (out, listener) -> readBufferUtil.writePng(out, compressionLevel, listener),
+        () -> savingCanvas = false);
+  }
 
-        // Capture the canvas content as an image
-        GLReadBufferUtil readBufferUtil = new GLReadBufferUtil(true);
-        boolean readSuccess = readBufferUtil.readPixels(canvas.getGL(), true);
+  private void canvasSaveFailed(String message) {
+    savingCanvas = false;
+    JOptionPane.showMessageDialog(this, message, "Save Error", JOptionPane.ERROR_MESSAGE);
+  }
 
-        if (!readSuccess) {
-          JOptionPane.showMessageDialog(this,
-              "Failed to read pixels from canvas. The canvas may be too small or not properly initialized.",
-              "Save Error", JOptionPane.ERROR_MESSAGE);
-          return;
-        }
+  /**
+   * Re-rasterize the drawing in software at a chosen resolution and region and
+   * stream it to a PNG file; needs no GL context and is not limited to the canvas size
+   */
+  private void exportImage() {
+    if (canvas.getWidth() <= 0 || canvas.getHeight() <= 0 || viewBounds == null) {
+      JOptionPane.showMessageDialog(this,
+          "Canvas has invalid dimensions. Please resize the window and try again.",
+          "Export Error", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
 
+    JTextField widthField = new JTextField(String.valueOf(canvas.getWidth() * 4), 6);
+    JTextField heightField = new JTextField(String.valueOf(canvas.getHeight() * 4), 6);
+    JComboBox<String> regionBox = new JComboBox<>(new String[] { "Current view", "Whole drawing" });
+    JComboBox<String> compressionBox = new JComboBox<>(COMPRESSION_NAMES);
+    compressionBox.setSelectedIndex(1);
+    JPanel optionsPanel = new JPanel(new GridLayout(4, 2, 5, 5));
+    optionsPanel.add(new JLabel("Width (pixels):"));
+    optionsPanel.add(widthField);
+    optionsPanel.add(new JLabel("Height (pixels):"));
+    optionsPanel.add(heightField);
+    optionsPanel.add(new JLabel("Region:"));
+    optionsPanel.add(regionBox);
+    optionsPanel.add(new JLabel("Compression:"));
+    optionsPanel.add(compressionBox);
+
+    if (JOptionPane.showConfirmDialog(this, optionsPanel, "Export Image",
+        JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+      return;
+    }
+
+    int exportWidth, exportHeight;
+    try {
+      exportWidth = Integer.parseInt(widthField.getText().trim());
+      exportHeight = Integer.parseInt(heightField.getText().trim());
+    } catch (NumberFormatException e) {
+      exportWidth = exportHeight = 0;
+    }
+    if (exportWidth <= 0 || exportHeight <= 0 || exportWidth > 65535 || exportHeight > 65535) {
+      JOptionPane.showMessageDialog(this,
+          "Width and height must be whole numbers between 1 and 65535.",
+          "Export Error", JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+
+    JFileChooser fileChooser = new JFileChooser();
+    fileChooser.setDialogTitle("Export Image");
+    fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+        "PNG Images", "png"));
+    if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+      return;
+    }
+    File file = fileChooser.getSelectedFile();
+    if (!file.getPath().toLowerCase().endsWith(".png")) {
+      file = new File(file.getPath() + ".png");
+    }
+
+    Bounds region = SceneExporter.fitAspect(regionBox.getSelectedIndex() == 0 ? viewBounds : getDrawingBounds(),
+        exportWidth, exportHeight);
+    // Keep strokes as heavy relative to the drawing as they look on screen
+    float screenPixelsPerUnit = canvas.getHeight() / viewBounds.getHeight();
+    float exportPixelsPerUnit = exportHeight / region.getHeight();
+    float thicknessScale = Math.max(1, exportPixelsPerUnit / screenPixelsPerUnit);
+
+    SceneSnapshot snapshot = scene.getSnapshot();
+    int compressionLevel = COMPRESSION_LEVELS[compressionBox.getSelectedIndex()];
+    int width = exportWidth, height = exportHeight;
+    exportInBackground("Exporting image", file, (out, listener) -> {
+      SceneExporter exporter = new SceneExporter();
+      exporter.setCompressionLevel(compressionLevel);
+      exporter.exportPng(snapshot.getShapes(), snapshot.getBackground(), region, width, height,
+          thicknessScale, out, listener);
+    }, null);
+  }
+
+  /**
+   * Writes an image to a PNG stream, reporting progress; interrupting the thread cancels it
+   */
+  private interface ImageEncoder {
+    void encode(OutputStream out, SceneExporter.ProgressListener listener) throws IOException;
+  }
+
+  /**
+   * Encode an image to a PNG file on a background thread, with a progress monitor
+   * that can cancel the export. A partial file is deleted.
+   * @param finished run on the event thread once the encoder has stopped, may be null
+   */
+  private void exportInBackground(String title, File file, ImageEncoder encoder, Runnable finished) {
+    ProgressMonitor monitor = new ProgressMonitor(this, title + " to " + file.getName(), null, 0, 100);
+    monitor.setMillisToDecideToPopup(250);
+
+    SwingWorker<Void, Void> worker = new SwingWorker<>() {
+      @Override
+      protected Void doInBackground() throws IOException {
+        boolean complete = false;
         try {
-          if (readBufferUtil.write(file)) {
-            JOptionPane.showMessageDialog(this,
-                "Canvas saved to " + file.getPath(),
-                "Save Successful", JOptionPane.INFORMATION_MESSAGE);
-          } else {
-            JOptionPane.showMessageDialog(this,
-                "Failed to write image file. The image might be empty or corrupted.",
-                "Save Error", JOptionPane.ERROR_MESSAGE);
+          try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            encoder.encode(out, (rows, totalRows) -> setProgress((int) (100L * rows / totalRows)));
+          }
+          complete = true;
+        } finally {
+          if (!complete) {
+            file.delete();
+          }
+          if (finished != null) {
+            SwingUtilities.invokeLater(finished);
           }
-        } catch (IOException e) {
-          JOptionPane.showMessageDialog(this,
-              "Error saving file: " + e.getMessage(),
-              "Save Error", JOptionPane.ERROR_MESSAGE);
         }
-      } finally {
+        return null;
+      }
+
+      @Override
+      protected void done() {
+        monitor.close();
+        if (isCancelled()) {
+          return;
+        }
         try {
-          canvas.getContext().release();
-        } catch (Exception e) {
-          // Ignore release errors
+          get();
+          JOptionPane.showMessageDialog(OpenGLPaintApp.this,
+              "Image saved to " + file.getPath(),
+              "Save Successful", JOptionPane.INFORMATION_MESSAGE);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+          JOptionPane.showMessageDialog(OpenGLPaintApp.this,
+              "Error saving file: " + e.getCause().getMessage(),
+              "Save Error", JOptionPane.ERROR_MESSAGE);
         }
+      }
+    };
 
-        // Restore original border visibility
-        showBrushBorder = originalBorderState;
+    worker.addPropertyChangeListener(event -> {
+      if ("progress".equals(event.getPropertyName())) {
+        monitor.setProgress((Integer) event.getNewValue());
+        if (monitor.isCanceled()) {
+          worker.cancel(true);
+        }
+      }
+    });
+    worker.execute();
+  }
 
-        // Refresh display to restore borders if they were visible
-        canvas.display();
+  /**
+   * Bounds of all shapes with a small margin, or the current view if none has finite bounds
+   */
+  private Bounds getDrawingBounds() {
+    float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+    for (Shape shape : scene.getShapes()) {
+      Bounds bounds = shape.getBounds();
+      // Skip degenerate shapes, e.g. from older files, whose NaN bounds would poison the region
+      if (!Float.isFinite(bounds.minX) || !Float.isFinite(bounds.minY)
+          || !Float.isFinite(bounds.maxX) || !Float.isFinite(bounds.maxY)) {
+        continue;
       }
+      minX = Math.min(minX, bounds.minX);
+      minY = Math.min(minY, bounds.minY);
+      maxX = Math.max(maxX, bounds.maxX);
+      maxY = Math.max(maxY, bounds.maxY);
     }
+    if (minX > maxX) {
+      return viewBounds;
+    }
+    float margin = Math.max(Math.max(maxX - minX, maxY - minY) * 0.02f, 0.01f);
+    return new Bounds(minX - margin, minY - margin, maxX + margin, maxY + margin);
   }
 
   @Override
@@ -331,31 +663,68 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
 
   @Override
   public void dispose(GLAutoDrawable drawable) {
-    // Nothing to dispose
+    renderScheduler.shutdown();
+    sceneLayer.dispose(drawable.getGL().getGL2());
+    liveLayer.dispose(drawable.getGL().getGL2());
+    readBufferUtil.dispose(drawable.getGL());
   }
 
   @Override
   public void display(GLAutoDrawable drawable) {
     GL2 gl = drawable.getGL().getGL2();
+    int width = drawable.getSurfaceWidth();
+    int height = drawable.getSurfaceHeight();
+    if (width <= 0 || height <= 0) return;
+
+    frameStats.beginFrame();
+    // A captured frame redraws the scene layer, so the trace includes the committed shapes
+    GLTraceRecorder traceRecorder = null;
+    if (captureTrace) {
+      captureTrace = false;
+      if (gl.isGL4bc()) {
+        traceRecorder = new GLTraceRecorder(gl);
+        gl = traceRecorder.getGL();
+        sceneLayer.invalidate();
+      } else {
+        showTraceMessage("GL traces need a desktop OpenGL compatibility profile.", JOptionPane.WARNING_MESSAGE);
+      }
+    }
+    // Apply the current zoom and pan; the view is centered on (-panX, -panY) like transformCoordinates
+    GLRenderer.setupViewport(gl, width, height, zoomFactor, -panX, -panY);
+    viewBounds = GLRenderer.getViewBounds(width, height, zoomFactor, -panX, -panY);
+    pixelSize = viewBounds.getHeight() / height;
+
+    // Pick up invalidations that arrived since the last frame, then take the scene
+    // version to draw; an edit published in between marks the next frame dirty again
+    if ((renderScheduler.takeDirtyLayers() & RenderScheduler.SCENE) != 0) {
+      sceneLayer.invalidate();
+      liveLayer.invalidate();
+    }
+    SceneSnapshot frame = scene.getSnapshot();
 
-    // Use the current background color
-    gl.glClearColor(
-        backgroundColor.getRed() / 255.0f,
-        backgroundColor.getGreen() / 255.0f,
-        backgroundColor.getBlue() / 255.0f,
-        1.0f);
-    gl.glClear(GL2.GL_COLOR_BUFFER_BIT);
+    // Committed shapes are rasterized once into the scene layer and reused until they change
+    if (!sceneLayer.isValid(width, height)) {
+      if (sceneLayer.begin(gl, width, height)) {
+        drawCommittedShapes(gl, frame, width, height);
+        sceneLayer.end(gl, gl.getDefaultDrawFramebuffer());
+      }
+    }
+    if (sceneLayer.isValid(width, height)) {
+      sceneLayer.draw(gl);
+    } else {
+      drawCommittedShapes(gl, frame, width, height);
+    }
 
-    // Draw all shapes
-    for (com.sample.paint.model.Shape shape : shapes) {
-      shape.draw(gl);
+    // Draw the brush or eraser stroke in progress, with every sample that arrived since the last frame
+    strokeInput.drain(strokeSink);
+    if (liveStroke.isActive()) {
+      drawLiveStroke(gl, width, height);
     }
 
     // Draw the shape being currently drawn (ghost shape)
     if (drawing) {
-      if (currentShape.equals("Eraser")) {
-        // Draw eraser trail with background color
-        drawEraserTrail(gl);
+      if (currentShape.equals("Brush") || currentShape.equals("Eraser")) {
+        // Drawn through the live stroke overlay above
       } else if (currentShape.equals("ZoomArea")) {
         // Draw zoom selection rectangle
         drawZoomRectangle(gl);
@@ -363,7 +732,7 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
         // For fill tool, draw a fill indicator at mouse position
         FillTool fillTool = new FillTool(endX, endY, currentColor);
         fillTool.draw(gl);
-      } else if (!currentShape.equals("Eraser")) {
+      } else {
         Shape ghostShape = createShape();
         if (ghostShape != null) {
           ghostShape.draw(gl);
@@ -371,6 +740,9 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
       }
     }
 
+    // A requested Save Canvas captures the frame as drawn so far
+    readCanvasForSave(gl);
+
     // Draw brush/eraser border indicator when appropriate
     if (showBrushBorder && (currentShape.equals("Brush") || currentShape.equals("Eraser"))) {
       Color borderColor = currentShape.equals("Brush") ? Color.BLACK : Color.RED;
@@ -378,6 +750,172 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
       // Pass the current zoom factor to ensure proper border size
       GLRenderer.drawPointBorder(gl, currentMouseX, currentMouseY, borderColor, size, zoomFactor);
     }
+
+    // The frame now shows the latest drag; measure from the event to here
+    long drag = lastDragNanos;
+    if (drag != presentedDragNanos) {
+      presentedDragNanos = drag;
+      frameStats.inputPresented(System.nanoTime() - drag);
+    }
+    if (showHud) {
+      GLRenderer.drawTextOverlay(gl, width, height, frameStats.getOverlayLines());
+    }
+    frameStats.endFrame(frame.getShapes().size());
+    if (traceRecorder != null) {
+      traceRecorder.endFrame();
+      saveTrace(traceRecorder.getTrace());
+    }
+
+    long now = System.nanoTime();
+    if (now - lastStatusUpdateNanos > STATUS_UPDATE_NANOS) {
+      lastStatusUpdateNanos = now;
+      updateZoomStatusLabel();
+    }
+  }
+
+  /**
+   * Clear to the background color and rasterize every committed shape
+   */
+  private void drawCommittedShapes(GL2 gl, SceneSnapshot frame, int width, int height) {
+    GLRenderer.clearScreen(gl, frame.getBackground());
+
+    // Draw all visible shapes through one point batch so consecutive runs share draw calls
+    PointBatch batch = GLRenderer.beginPointBatch(gl);
+    if (profiling) {
+      OverdrawRasterTarget overdraw = new OverdrawRasterTarget(width, height);
+      overdraw.setView(viewBounds.minX, viewBounds.maxX, viewBounds.minY, viewBounds.maxY);
+      ProfilingRasterTarget profiler = new ProfilingRasterTarget(batch, overdraw);
+      sceneRenderer.draw(profiler, frame.getShapes(), viewBounds, pixelSize);
+      lastProfile = profiler;
+    } else {
+      sceneRenderer.draw(batch, frame.getShapes(), viewBounds, pixelSize);
+    }
+    batch.flush();
+    frameStats.sceneDrawn(sceneRenderer.getDrawnCount(), sceneRenderer.getCulledCount());
+    updateZoomStatusLabel();
+  }
+
+  /**
+   * Turn the rasterization profiler on or off; while on, every scene redraw is
+   * counted and its totals are shown in the status bar
+   */
+  private void toggleProfiling() {
+    profiling = !profiling;
+    if (!profiling) {
+      lastProfile = null;
+    }
+    invalidateScene();
+  }
+
+  /**
+   * Write a captured frame to the trace directory on a background thread, with its
+   * summary in a text file beside it, and show the summary once written
+   */
+  private void saveTrace(GLTrace trace) {
+    String name = "frame-" + System.currentTimeMillis();
+    Path file = TRACE_DIR.resolve(name + "." + GLTrace.EXTENSION);
+    Path summaryFile = TRACE_DIR.resolve(name + ".txt");
+
+    SwingWorker<GLTraceStats, Void> worker = new SwingWorker<>() {
+      @Override
+      protected GLTraceStats doInBackground() throws IOException {
+        Files.createDirectories(TRACE_DIR);
+        trace.write(file);
+        GLTraceStats stats = GLTraceStats.of(trace);
+        Files.writeString(summaryFile, stats.getSummary());
+        return stats;
+      }
+
+      @Override
+      protected void done() {
+        try {
+          GLTraceStats stats = get();
+          showReport("GL Trace", String.format("Captured %d GL calls, %d draw calls and %d redundant state changes to%n%s%n%n%s",
+              stats.getCalls(), stats.getDrawCalls(), stats.getRedundantChanges(), file, stats.getSummary()));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+          JOptionPane.showMessageDialog(OpenGLPaintApp.this, "Error saving GL trace: " + e.getCause().getMessage(),
+              "GL Trace", JOptionPane.ERROR_MESSAGE);
+        }
+      }
+    };
+    worker.execute();
+  }
+
+  private void showTraceMessage(String message, int messageType) {
+    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, message, "GL Trace", messageType));
+  }
+
+  /**
+   * Show the full summary of the last profiled frame
+   */
+  private void showProfileSummary() {
+    ProfilingRasterTarget profile = lastProfile;
+    if (profile == null) {
+      JOptionPane.showMessageDialog(this,
+          "No profiled frame yet. Press F9 to start profiling.",
+          "Rasterization Profile", JOptionPane.INFORMATION_MESSAGE);
+      return;
+    }
+    showReport("Rasterization Profile", profile.getSummary());
+  }
+
+  /**
+   * Show a multi-line report in a dialog, in a fixed-width font so its columns line up
+   */
+  private void showReport(String title, String report) {
+    JTextArea text = new JTextArea(report, Math.min(30, report.split("\n", -1).length), 80);
+    text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    text.setEditable(false);
+    text.setCaretPosition(0);
+    JOptionPane.showMessageDialog(this, new JScrollPane(text), title, JOptionPane.PLAIN_MESSAGE);
+  }
+
+  /**
+   * Save the overdraw heatmap of the last profiled frame as a PNG image
+   */
+  private void exportOverdrawHeatmap() {
+    ProfilingRasterTarget profile = lastProfile;
+    if (profile == null) {
+      JOptionPane.showMessageDialog(this,
+          "No profiled frame yet. Press F9 to start profiling.",
+          "Overdraw Heatmap", JOptionPane.INFORMATION_MESSAGE);
+      return;
+    }
+
+    JFileChooser fileChooser = new JFileChooser();
+    fileChooser.setDialogTitle("Save Overdraw Heatmap");
+    fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+        "PNG Images", "png"));
+
+    if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+      File file = fileChooser.getSelectedFile();
+      if (!file.getPath().toLowerCase().endsWith(".png")) {
+        file = new File(file.getPath() + ".png");
+      }
+      try {
+        ImageIO.write(profile.getOverdraw().toHeatmap(), "png", file);
+      } catch (IOException e) {
+        JOptionPane.showMessageDialog(this,
+            "Error saving file: " + e.getMessage(),
+            "Save Error", JOptionPane.ERROR_MESSAGE);
+      }
+    }
+  }
+
+  /**
+   * Discard the retained scene rendering after the shapes, background or view changed
+   */
+  private void invalidateScene() {
+    renderScheduler.invalidate(RenderScheduler.SCENE);
+  }
+
+  /**
+   * Schedule a frame for changes that only affect the ghost shape or overlays
+   */
+  private void requestRender() {
+    renderScheduler.invalidate(RenderScheduler.OVERLAY);
   }
 
   // Create appropriate shape based on current settings
@@ -394,8 +932,6 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
         return new Ellipse(startX, startY, endX, endY, currentColor, isFilled, thickness);
       case "Triangle":
         return new Triangle(startX, startY, endX, endY, currentColor, isFilled, thickness);
-      case "Brush":
-        return new BrushStroke(new ArrayList<>(brushPoints), currentColor, thickness);
       case "Fill":
         return new FillTool(endX, endY, currentColor);
       default:
@@ -403,20 +939,30 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
     }
   }
 
-  // New method to draw eraser trail - modified to consistently use BrushStroke
-  private void drawEraserTrail(GL2 gl) {
-    float thickerSize = thickness * 2; // Make eraser thicker than brush
-
-    if (eraserPoints.size() > 1) {
-      for (int i = 0; i < eraserPoints.size() - 1; i++) {
-        Point p1 = eraserPoints.get(i);
-        Point p2 = eraserPoints.get(i + 1);
-        DrawingAlgorithms.bresenhamLine(gl, p1.x, p1.y, p2.x, p2.y, backgroundColor, thickerSize);
+  /**
+   * Rasterize the segments added to the live stroke since the last frame onto the
+   * persistent overlay, then composite the overlay over the scene
+   */
+  private void drawLiveStroke(GL2 gl, int width, int height) {
+    boolean retained = liveLayer.isValid(width, height);
+    if (liveLayer.begin(gl, width, height)) {
+      if (!retained) {
+        // Overlay was resized or the view changed: start from a transparent layer
+        gl.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+        gl.glClear(GL2.GL_COLOR_BUFFER_BIT);
+        liveStroke.resetDrawn();
       }
-    } else if (eraserPoints.size() == 1) {
-      // Draw a single point if there's only one point
-      Point p = eraserPoints.get(0);
-      GLRenderer.drawThickPoint(gl, p.x, p.y, backgroundColor, thickerSize);
+      PointBatch batch = GLRenderer.beginPointBatch(gl);
+      liveStroke.drawPending(batch);
+      batch.flush();
+      liveLayer.end(gl, gl.getDefaultDrawFramebuffer());
+      liveLayer.draw(gl, true);
+    } else {
+      // No framebuffer objects: redraw the whole stroke every frame
+      liveStroke.resetDrawn();
+      PointBatch batch = GLRenderer.beginPointBatch(gl);
+      liveStroke.drawPending(batch);
+      batch.flush();
     }
   }
 
@@ -432,6 +978,7 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
     gl.glVertex2f(zoomEndX, zoomEndY);
     gl.glVertex2f(zoomStartX, zoomEndY);
     gl.glEnd();
+    GLRenderer.countDraws(1, 4);
     gl.glLineWidth(1.0f);
   }
 
@@ -458,17 +1005,29 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
           zoomEndX = startX; // Initialize end to same as start
           zoomEndY = startY;
         } else if (currentShape.equals("Brush")) {
-          brushPoints.clear();
-          brushPoints.add(new Point(startX, startY));
+          strokeInput.clear();
+          liveStroke.start(startX, startY, currentColor, thickness);
+          liveLayer.invalidate();
+        } else if (currentShape.equals("Eraser") && eraserMode.equals("point")) {
+          // Start a new eraser trail drawn with the background color
+          strokeInput.clear();
+          liveStroke.start(startX, startY, scene.getBackground(), thickness * 2);
+          liveLayer.invalidate();
         } else if (currentShape.equals("Eraser")) {
-          // Start a new eraser trail - clear the previous points
-          eraserPoints.clear();
-          eraserPoints.add(new Point(startX, startY));
+          // Everything one shape-eraser drag removes is undone in one step
+          scene.beginEdit();
+          eraseEditOpen = true;
         }
       }
 
       @Override
       public void mouseReleased(MouseEvent e) {
+        // Close the eraser's undo group even if the tool or mode changed during the drag
+        if (eraseEditOpen) {
+          eraseEditOpen = false;
+          scene.endEdit();
+        }
+
         // Handle panning end
         if (isPanning) {
           isPanning = false;
@@ -490,29 +1049,34 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
         } else if (currentShape.equals("Fill")) {
           // Find and fill a shape at the current position
           applyFillToShapeAt(endX, endY);
-        } else if (currentShape.equals("Brush")) {
-          shapes.add(new BrushStroke(new ArrayList<>(brushPoints), currentColor, thickness));
-        } else if (currentShape.equals("Eraser")) {
-          if (eraserMode.equals("point") && !eraserPoints.isEmpty()) {
-            // Add the eraser stroke as a brush stroke with background color
-            // Always use the current background color for eraser strokes
-            shapes.add(new BrushStroke(new ArrayList<>(eraserPoints), backgroundColor, thickness * 2));
+        } else if (currentShape.equals("Eraser") && eraserMode.equals("shape")) {
+          // Shapes were removed during the drag; its undo group is closed above
+        } else if (currentShape.equals("Brush") || currentShape.equals("Eraser")) {
+          // Hand the live stroke's samples over to the committed shape.
+          // Point eraser strokes are brush strokes drawn with the background color.
+          strokeInput.drain(strokeSink);
+          BrushStroke stroke = liveStroke.finish(BrushStroke.DEFAULT_TOLERANCE);
+          if (stroke != null) {
+            scene.add(stroke);
           }
-          // Clear for next drawing operation
-          eraserPoints.clear();
         } else {
           Shape shape = createShape();
           if (shape != null) {
-            shapes.add(shape);
+            scene.add(shape);
           }
         }
-        canvas.display();
+        requestRender();
       }
     });
 
     canvas.addMouseMotionListener(new MouseAdapter() {
       @Override
       public void mouseDragged(MouseEvent e) {
+        // When the event was generated, in System.nanoTime() terms, including time spent queued
+        long eventNanos = System.nanoTime()
+            - TimeUnit.MILLISECONDS.toNanos(Math.max(0, System.currentTimeMillis() - e.getWhen()));
+        lastDragNanos = eventNanos;
+
         // Handle panning with move tool or right/middle mouse button
         if (isPanning) {
           float dx = (e.getX() - lastPanX) / (float) canvas.getWidth();
@@ -524,16 +1088,15 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
 
           lastPanX = e.getX();
           lastPanY = e.getY();
-          canvas.display();
+          invalidateScene();
           return;
         }
 
         if (!drawing)
           return; // Don't process if we're not drawing
 
-        float[] coords = transformCoordinates(e.getX(), e.getY());
-        endX = coords[0];
-        endY = coords[1];
+        endX = toWorldX(e.getX());
+        endY = toWorldY(e.getY());
 
         // Update current mouse position
         currentMouseX = endX;
@@ -543,17 +1106,17 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
           zoomEndX = endX;
           zoomEndY = endY;
         } else if (currentShape.equals("Brush")) {
-          brushPoints.add(new Point(endX, endY));
+          queueStrokeSample(endX, endY, eventNanos);
         } else if (currentShape.equals("Eraser")) {
           if (eraserMode.equals("point")) {
             // Add to eraser trail for point eraser
-            eraserPoints.add(new Point(endX, endY));
+            queueStrokeSample(endX, endY, eventNanos);
           } else {
             // Shape eraser - remove entire shapes
             eraseShapes(endX, endY);
           }
         }
-        canvas.display();
+        requestRender();
       }
 
       @Override
@@ -561,7 +1124,9 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
         float[] coords = transformCoordinates(e.getX(), e.getY());
         currentMouseX = coords[0];
         currentMouseY = coords[1];
-        canvas.display(); // For real-time border display
+        if (showBrushBorder) {
+          requestRender(); // For real-time border display
+        }
       }
     });
 
@@ -588,7 +1153,7 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
           updateZoomStatusLabel();
 
           // Trigger redraw with new zoom
-          canvas.display();
+          invalidateScene();
         }
       }
     });
@@ -603,14 +1168,14 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
             // Zoom in
             if (zoomFactor < maxZoom) {
               zoomFactor += zoomIncrement;
-              canvas.display();
+              invalidateScene();
             }
             break;
           case KeyEvent.VK_MINUS:
             // Zoom out
             if (zoomFactor > minZoom) {
               zoomFactor -= zoomIncrement;
-              canvas.display();
+              invalidateScene();
             }
             break;
           case KeyEvent.VK_0:
@@ -618,24 +1183,60 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
             zoomFactor = 1.0f;
             panX = 0.0f;
             panY = 0.0f;
-            canvas.display();
+            invalidateScene();
             break;
           // Arrow keys for panning
           case KeyEvent.VK_LEFT:
             panX += 0.1f / zoomFactor;
-            canvas.display();
+            invalidateScene();
             break;
           case KeyEvent.VK_RIGHT:
             panX -= 0.1f / zoomFactor;
-            canvas.display();
+            invalidateScene();
             break;
           case KeyEvent.VK_UP:
             panY -= 0.1f / zoomFactor;
-            canvas.display();
+            invalidateScene();
             break;
           case KeyEvent.VK_DOWN:
             panY += 0.1f / zoomFactor;
-            canvas.display();
+            invalidateScene();
+            break;
+          // Ctrl+Z undoes, Ctrl+Y or Ctrl+Shift+Z redoes
+          case KeyEvent.VK_Z:
+            if (e.isControlDown()) {
+              if (e.isShiftDown()) {
+                scene.redo();
+              } else {
+                scene.undo();
+              }
+            }
+            break;
+          case KeyEvent.VK_Y:
+            if (e.isControlDown()) {
+              scene.redo();
+            }
+            break;
+          // F3 toggles the frame statistics overlay
+          case KeyEvent.VK_F3:
+            showHud = !showHud;
+            requestRender();
+            break;
+          // F4 captures the GL calls of the next frame
+          case KeyEvent.VK_F4:
+            captureTrace = true;
+            invalidateScene();
+            break;
+          // F9 toggles the rasterization profiler, Ctrl+F9 shows the last profile's summary,
+          // Shift+F9 exports its overdraw heatmap
+          case KeyEvent.VK_F9:
+            if (e.isShiftDown()) {
+              exportOverdrawHeatmap();
+            } else if (e.isControlDown()) {
+              showProfileSummary();
+            } else {
+              toggleProfiling();
+            }
             break;
         }
 
@@ -651,18 +1252,198 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
 
   private float[] transformCoordinates(float x, float y) {
     // Transform mouse coordinates based on zoom level and panning
+    return new float[] { toWorldX(x), toWorldY(y) };
+  }
+
+  private float toWorldX(float x) {
     float aspectRatio = (float) canvas.getWidth() / canvas.getHeight();
-    float transformedX = ((x / canvas.getWidth() * 2 - 1) * aspectRatio) / zoomFactor - panX;
-    float transformedY = (1 - y / canvas.getHeight() * 2) / zoomFactor - panY;
+    return ((x / canvas.getWidth() * 2 - 1) * aspectRatio) / zoomFactor - panX;
+  }
+
+  private float toWorldY(float y) {
+    return (1 - y / canvas.getHeight() * 2) / zoomFactor - panY;
+  }
 
-    return new float[] { transformedX, transformedY };
+  /**
+   * Queue a drag sample for the next frame without touching the stroke itself.
+   * If frames stall long enough to fill the queue, drain it here rather than drop samples.
+   */
+  private void queueStrokeSample(float x, float y, long timeNanos) {
+    if (!strokeInput.offer(x, y, timeNanos)) {
+      strokeInput.drain(strokeSink);
+      strokeInput.offer(x, y, timeNanos);
+    }
   }
 
   /**
    * Erase entire shapes that the cursor touches
    */
   private void eraseShapes(float x, float y) {
-    shapes.removeIf(shape -> shape.isPointInside(x, y, eraserSize));
+    List<Shape> hits = shapeIndex.query(x, y, eraserSize);
+    if (!hits.isEmpty()) {
+      scene.removeAll(hits);
+    }
+  }
+
+  /**
+   * Recover the autosaved scene, if any, and start journaling changes to it
+   */
+  private void openScene() {
+    SceneSnapshot initial = SceneSnapshot.EMPTY;
+    try {
+      // A second instance would overwrite this one's generations
+      autosaveLock = SceneJournal.lock(AUTOSAVE_DIR);
+      if (autosaveLock == null) {
+        autosaveProblem = "Autosave off: another window is using it";
+      }
+    } catch (IOException e) {
+      autosaveProblem = "Autosave off: " + e.getMessage();
+    }
+    if (autosaveLock != null) {
+      try {
+        SceneFile.Contents recovered = SceneJournal.recover(AUTOSAVE_DIR);
+        if (recovered != null) {
+          initial = new SceneSnapshot(PersistentVector.of(recovered.getShapes()), recovered.getBackground());
+        }
+      } catch (IOException e) {
+        // Keep the unreadable session rather than letting the first checkpoint delete it
+        String message = "Could not recover the autosaved drawing: " + e.getMessage();
+        try {
+          Path kept = SceneJournal.setAside(AUTOSAVE_DIR);
+          if (kept != null) {
+            message += "\nIt was kept as " + kept;
+          }
+        } catch (IOException moveError) {
+          autosaveProblem = "Autosave off: could not set aside the unrecoverable drawing";
+          message += "\nAutosave is off so that it is not overwritten.";
+        }
+        String warning = message;
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, warning,
+            "Autosave", JOptionPane.WARNING_MESSAGE));
+      }
+    }
+    scene = new Scene(initial, new SceneHistory());
+    // Undo memory in megabytes, e.g. -Dpaint.undoMemoryMB=256
+    scene.setHistoryBudget(Long.getLong(UNDO_MEMORY_PROPERTY, SceneHistory.DEFAULT_MEMORY_BUDGET >> 20) << 20);
+    shapeIndex.rebuild(initial.getShapes());
+
+    // Keep the hit-test index in step with the scene and redraw after every edit
+    scene.addListener(new Scene.Listener() {
+      @Override
+      public void shapeAdded(SceneSnapshot snapshot, Shape shape) {
+        shapeIndex.add(shape);
+        invalidateScene();
+        updateUndoButtons();
+      }
+
+      @Override
+      public void shapeReplaced(SceneSnapshot snapshot, int index, Shape oldShape, Shape newShape) {
+        shapeIndex.replace(oldShape, newShape);
+        invalidateScene();
+        updateUndoButtons();
+      }
+
+      @Override
+      public void shapesRemoved(SceneSnapshot snapshot, int[] indices, List<Shape> removed) {
+        for (Shape shape : removed) {
+          shapeIndex.remove(shape);
+        }
+        invalidateScene();
+        updateUndoButtons();
+      }
+
+      @Override
+      public void backgroundChanged(SceneSnapshot snapshot) {
+        invalidateScene();
+        updateUndoButtons();
+      }
+
+      @Override
+      public void sceneReplaced(SceneSnapshot before, SceneSnapshot snapshot,
+          PersistentVector.Difference<Shape> difference) {
+        if (difference == null) {
+          shapeIndex.rebuild(snapshot.getShapes());
+        } else {
+          updateShapeIndex(snapshot.getShapes(), difference);
+        }
+        invalidateScene();
+        updateUndoButtons();
+      }
+    });
+
+    if (autosaveProblem == null) {
+      try {
+        journal = new SceneJournal(AUTOSAVE_DIR, initial.getShapes(), initial.getBackground());
+        journal.setFailureListener(e -> updateZoomStatusLabel());
+        scene.addListener(journal);
+      } catch (IOException e) {
+        autosaveProblem = "Autosave off: " + e.getMessage();
+      }
+    }
+    if (journal == null) {
+      releaseAutosaveLock();
+    }
+  }
+
+  /**
+   * Apply an undo or redo to the hit-test index: drop the removed shapes and put each
+   * run of restored shapes back between its neighbors in the new version
+   */
+  private void updateShapeIndex(PersistentVector<Shape> shapes, PersistentVector.Difference<Shape> difference) {
+    for (Shape shape : difference.getRemoved()) {
+      shapeIndex.remove(shape);
+    }
+    int[] insertedAt = difference.getInsertedIndices();
+    List<Shape> inserted = difference.getInserted();
+    for (int start = 0, end; start < insertedAt.length; start = end) {
+      end = start + 1;
+      while (end < insertedAt.length && insertedAt[end] == insertedAt[end - 1] + 1) {
+        end++;
+      }
+      Shape below = insertedAt[start] > 0 ? shapes.get(insertedAt[start] - 1) : null;
+      Shape above = insertedAt[end - 1] + 1 < shapes.size() ? shapes.get(insertedAt[end - 1] + 1) : null;
+      shapeIndex.insertAll(inserted.subList(start, end), below, above);
+    }
+  }
+
+  /**
+   * Enable Undo and Redo only while there is a step to go to; may be called on any thread
+   */
+  private void updateUndoButtons() {
+    SwingUtilities.invokeLater(() -> {
+      if (toolbar != null) {
+        toolbar.setUndoRedoEnabled(scene.canUndo(), scene.canRedo());
+      }
+    });
+  }
+
+  /**
+   * Flush outstanding journal records to disk before exit
+   */
+  private void closeJournal() {
+    if (journal == null) {
+      return;
+    }
+    scene.removeListener(journal);
+    try {
+      journal.close();
+    } catch (IOException e) {
+      System.err.println("Autosave failed: " + e.getMessage());
+    }
+    journal = null;
+    releaseAutosaveLock();
+  }
+
+  private void releaseAutosaveLock() {
+    if (autosaveLock == null) {
+      return;
+    }
+    try {
+      autosaveLock.channel().close();
+    } catch (IOException e) {
+      // The lock goes with the process anyway
+    }
+    autosaveLock = null;
   }
 
   /**
@@ -700,6 +1481,7 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
 
       // Update zoom label
       updateZoomStatusLabel();
+      invalidateScene();
     }
   }
 
@@ -707,9 +1489,28 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
    * Safely update the zoom status label
    */
   private void updateZoomStatusLabel() {
-    if (statusLabel != null) {
-      statusLabel.setText(String.format("Zoom: %.0f%%", zoomFactor * 100));
+    String zoomText = String.format("Zoom: %.0f%% | Shapes: %d drawn, %d culled",
+        zoomFactor * 100, sceneRenderer.getDrawnCount(), sceneRenderer.getCulledCount());
+    ProfilingRasterTarget profile = lastProfile;
+    String frameText = frameStats.getStatusText();
+    if (!frameText.isEmpty()) {
+      zoomText += " | " + frameText;
+    }
+    if (profile != null) {
+      zoomText += String.format(" | Profile: %d points, %d spans, overdraw %.1fx",
+          profile.getPointCount(), profile.getSpanCount(), profile.getAverageOverdraw());
     }
+    // Tell the user when their work is no longer being autosaved
+    SceneJournal currentJournal = journal;
+    IOException autosaveFailure = currentJournal == null ? null : currentJournal.getFailure();
+    String problem = autosaveFailure != null ? "Autosave stopped: " + autosaveFailure.getMessage() : autosaveProblem;
+    String text = problem == null ? zoomText : zoomText + " | " + problem;
+    // May be called from the render thread
+    SwingUtilities.invokeLater(() -> {
+      if (statusLabel != null) {
+        statusLabel.setText(text);
+      }
+    });
   }
 
   @Override
@@ -719,7 +1520,7 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
     if (width <= 0 || height <= 0) return; // Prevent division by zero
 
     // Apply custom viewport setup that includes zoom
-    GLRenderer.setupViewport(gl, width, height, zoomFactor, panX, panY);
+    GLRenderer.setupViewport(gl, width, height, zoomFactor, -panX, -panY);
   }
 
   public static void main(String[] args) {
@@ -730,55 +1531,49 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
    * Apply fill to the first shape found at the given coordinates
    */
   private void applyFillToShapeAt(float x, float y) {
-    // Go through shapes in reverse order (top to bottom visually)
-    for (int i = shapes.size() - 1; i >= 0; i--) {
-      Shape shape = shapes.get(i);
+    // Go through the shapes under the point in reverse order (top to bottom visually)
+    List<Shape> hits = shapeIndex.query(x, y, 0.01f);
+    for (int i = hits.size() - 1; i >= 0; i--) {
+      Shape shape = hits.get(i);
 
       // Skip brush strokes and lines (they can't be filled)
       if (shape instanceof BrushStroke || shape instanceof Line || shape instanceof FillTool) {
         continue;
       }
 
-      if (shape.isPointInside(x, y, 0.01f)) {
-        // Create a copy of the shape with fill enabled and the current color
-        Shape newShape = null;
-
-        if (shape instanceof Rectangle) {
-          Rectangle rect = (Rectangle) shape;
-          newShape = new Rectangle(
-              rect.getX1(), rect.getY1(),
-              rect.getX2(), rect.getY2(),
-              currentColor, true, rect.getThickness());
-        } else if (shape instanceof Circle) {
-          Circle circle = (Circle) shape;
-          newShape = new Circle(
-              circle.getCenterX() - circle.getRadius(), circle.getCenterY(),
-              circle.getCenterX() + circle.getRadius(), circle.getCenterY(),
-              currentColor, true, circle.getThickness());
-        } else if (shape instanceof Ellipse) {
-          Ellipse ellipse = (Ellipse) shape;
-          newShape = new Ellipse(
-              ellipse.getCenterX() - ellipse.getRadiusX(), ellipse.getCenterY() - ellipse.getRadiusY(),
-              ellipse.getCenterX() + ellipse.getRadiusX(), ellipse.getCenterY() + ellipse.getRadiusY(),
-              currentColor, true, ellipse.getThickness());
-        } else if (shape instanceof Triangle) {
-          Triangle tri = (Triangle) shape;
-          newShape = new Triangle(
-              tri.getX1(), tri.getY1(),
-              tri.getX2(), tri.getY2(),
-              currentColor, true, tri.getThickness());
-        }
-
-        // Replace the old shape with the new filled shape
-        if (newShape != null) {
-          shapes.set(i, newShape);
+      // Create a copy of the shape with fill enabled and the current color
+      Shape newShape = null;
+
+      if (shape instanceof Rectangle) {
+        Rectangle rect = (Rectangle) shape;
+        newShape = new Rectangle(
+            rect.getX1(), rect.getY1(),
+            rect.getX2(), rect.getY2(),
+            currentColor, true, rect.getThickness());
+      } else if (shape instanceof Circle) {
+        Circle circle = (Circle) shape;
+        newShape = Circle.fromCenter(
+            circle.getCenterX(), circle.getCenterY(), circle.getRadius(),
+            currentColor, true, circle.getThickness());
+      } else if (shape instanceof Ellipse) {
+        Ellipse ellipse = (Ellipse) shape;
+        newShape = Ellipse.fromCenter(
+            ellipse.getCenterX(), ellipse.getCenterY(), ellipse.getRadiusX(), ellipse.getRadiusY(),
+            currentColor, true, ellipse.getThickness());
+      } else if (shape instanceof Triangle) {
+        Triangle tri = (Triangle) shape;
+        newShape = Triangle.fromVertices(
+            tri.getX1(), tri.getY1(), tri.getX2(), tri.getY2(), tri.getX3(), tri.getY3(),
+            currentColor, true, tri.getThickness());
+      }
 
-          // Redraw the canvas
-          canvas.display();
+      // Replace the old shape with the new filled shape
+      if (newShape != null) {
+        // Swap it in at the same stacking position and redraw the canvas
+        scene.replace(shape, newShape);
 
-          // Stop after filling one shape
-          break;
-        }
+        // Stop after filling one shape
+        break;
       }
     }
   }
@@ -787,6 +1582,8 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
    * Update any existing eraser strokes to match the current background color
    */
   private void updateEraserStrokes() {
+    List<Shape> shapes = scene.getShapes();
+    Color backgroundColor = scene.getBackground();
     for (int i = 0; i < shapes.size(); i++) {
       Shape shape = shapes.get(i);
       if (shape instanceof BrushStroke) {
@@ -794,7 +1591,7 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
         // If this brush stroke is likely an eraser stroke (not a regular colored brush stroke)
         // Update its color to match the current background
         if (isLikelyEraserStroke(brushStroke)) {
-          shapes.set(i, new BrushStroke(brushStroke.getPoints(), backgroundColor, brushStroke.getThickness()));
+          scene.set(i, brushStroke.withColor(backgroundColor));
         }
       }
     }
@@ -808,7 +1605,7 @@ public class OpenGLPaintApp extends JFrame implements GLEventListener, ActionLis
   private boolean isLikelyEraserStroke(BrushStroke stroke) {
     Color strokeColor = stroke.getColor();
     // Check if colors are similar (not necessarily exactly equal)
-    return colorDistance(strokeColor, backgroundColor) < 30 || isWhiteOrDefaultColor(strokeColor);
+    return colorDistance(strokeColor, scene.getBackground()) < 30 || isWhiteOrDefaultColor(strokeColor);
   }
 
   /**
@@ -0,0 +1,42 @@
+package com.sample.paint.model;
+
+/**
+ * Immutable axis-aligned bounding box in world coordinates
+ */
+public class Bounds {
+    public final float minX;
+    public final float minY;
+    public final float maxX;
+    public final float maxY;
+
+    public Bounds(float minX, float minY, float maxX, float maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Check if this box overlaps the given box, with touching edges counting as overlap
+     */
+    public boolean intersects(float minX, float minY, float maxX, float maxY) {
+        return this.minX <= maxX && minX <= this.maxX &&
+               this.minY <= maxY && minY <= this.maxY;
+    }
+
+    /**
+     * Check if the point lies within this box grown by the tolerance on every side
+     */
+    public boolean contains(float x, float y, float tolerance) {
+        return minX - tolerance <= x && x <= maxX + tolerance &&
+               minY - tolerance <= y && y <= maxY + tolerance;
+    }
+
+    public float getWidth() {
+        return maxX - minX;
+    }
+
+    public float getHeight() {
+        return maxY - minY;
+    }
+}
@@ -1,43 +1,233 @@
 package com.sample.paint.model;
 
 import java.awt.Color;
+import java.nio.FloatBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
-import com.jogamp.opengl.GL2;
 import com.sample.paint.util.DrawingAlgorithms;
+import com.sample.paint.util.RasterTarget;
+import com.sample.paint.util.StrokeSimplifier;
 
 public class BrushStroke extends Shape {
-    private List<Point> points;
+    /** Default simplification error in world units, below half a device pixel at normal zoom */
+    public static final float DEFAULT_TOLERANCE = 0.0005f;
+    // Each coarser level allows this many times the error of the previous one
+    private static final float LEVEL_FACTOR = 4.0f;
+    private static final int MAX_LEVELS = 5;
+
+    // Level 0 is the stored stroke, further levels are progressively coarser copies.
+    // Each level is a packed array of interleaved x, y coordinates.
+    private final float[][] levels;
+    private final float[] levelTolerances;
 
     public BrushStroke(List<Point> points, Color color, float thickness) {
+        this(points, color, thickness, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Create a stroke simplified with the given error tolerance
+     * @param tolerance maximum deviation in world units; 0 keeps every sample and builds no levels
+     */
+    public BrushStroke(List<Point> points, Color color, float thickness, float tolerance) {
+        this(pack(points), points.size(), color, thickness, tolerance);
+    }
+
+    public BrushStroke(PackedPointList points, Color color, float thickness, float tolerance) {
+        this(points.toArray(), points.size(), color, thickness, tolerance);
+    }
+
+    /**
+     * Create a stroke from interleaved x, y coordinates.
+     * The stroke may keep the array, callers must not modify it afterwards.
+     * @param coords interleaved coordinates; may be longer than count * 2
+     * @param count number of points in coords
+     * @param tolerance maximum deviation in world units; 0 keeps every sample and builds no levels
+     */
+    public BrushStroke(float[] coords, int count, Color color, float thickness, float tolerance) {
         super(color, false, thickness); // Brush strokes are never filled
-        this.points = new ArrayList<>(points);
+
+        List<float[]> levelList = new ArrayList<>();
+        List<Float> tolerances = new ArrayList<>();
+        float[] level = tolerance <= 0 && coords.length == count * 2
+                ? coords
+                : StrokeSimplifier.simplify(coords, count, tolerance);
+        levelList.add(level);
+        tolerances.add(tolerance);
+
+        // Precompute coarser levels until they stop shrinking
+        float levelTolerance = tolerance;
+        while (tolerance > 0 && levelList.size() < MAX_LEVELS && level.length > 4) {
+            levelTolerance *= LEVEL_FACTOR;
+            float[] coarser = StrokeSimplifier.simplify(level, level.length / 2, levelTolerance);
+            if (coarser.length == level.length) {
+                break;
+            }
+            level = coarser;
+            levelList.add(level);
+            tolerances.add(levelTolerance);
+        }
+
+        levels = levelList.toArray(new float[0][]);
+        levelTolerances = new float[tolerances.size()];
+        for (int i = 0; i < levelTolerances.length; i++) {
+            levelTolerances[i] = tolerances.get(i);
+        }
+    }
+
+    /**
+     * Copy of another stroke with a different color, sharing its points
+     */
+    private BrushStroke(BrushStroke other, Color color) {
+        this(other.levels, other.levelTolerances, color, other.thickness);
+    }
+
+    private BrushStroke(float[][] levels, float[] levelTolerances, Color color, float thickness) {
+        super(color, false, thickness);
+        this.levels = levels;
+        this.levelTolerances = levelTolerances;
+    }
+
+    /**
+     * Recreate a stroke from previously computed levels of detail without simplifying
+     * again, e.g. when loading one. The stroke keeps the arrays.
+     * @param levels interleaved x, y coordinates per level, full detail first
+     * @param levelTolerances simplification error of each level
+     */
+    public static BrushStroke fromLevels(float[][] levels, float[] levelTolerances, Color color, float thickness) {
+        if (levels.length == 0 || levels.length != levelTolerances.length) {
+            throw new IllegalArgumentException("Expected one tolerance per level and at least one level");
+        }
+        return new BrushStroke(levels, levelTolerances, color, thickness);
+    }
+
+    private static float[] pack(List<Point> points) {
+        float[] coords = new float[points.size() * 2];
+        for (int i = 0; i < points.size(); i++) {
+            coords[i * 2] = points.get(i).x;
+            coords[i * 2 + 1] = points.get(i).y;
+        }
+        return coords;
     }
 
     @Override
-    public void draw(GL2 gl) {
-        for (int i = 0; i < points.size() - 1; i++) {
-            Point p1 = points.get(i);
-            Point p2 = points.get(i + 1);
-            DrawingAlgorithms.bresenhamLine(gl, p1.x, p1.y, p2.x, p2.y, color, thickness);
+    public void draw(RasterTarget target) {
+        float[] coords = levels[selectLevel(target.getPixelSize())];
+        for (int i = 0; i + 3 < coords.length; i += 2) {
+            DrawingAlgorithms.bresenhamLine(target, coords[i], coords[i + 1], coords[i + 2], coords[i + 3], color, thickness);
+        }
+    }
+
+    /**
+     * Pick the coarsest level whose error stays below half a device pixel
+     */
+    private int selectLevel(float pixelSize) {
+        int level = 0;
+        while (level + 1 < levels.length && levelTolerances[level + 1] <= pixelSize / 2) {
+            level++;
         }
+        return level;
     }
 
     @Override
     public boolean isPointInside(float x, float y, float tolerance) {
-        for (Point p : points) {
-            if (p.distanceTo(x, y) <= tolerance) {
+        if (!getBounds().contains(x, y, tolerance)) {
+            return false;
+        }
+        // Simplified strokes keep few samples along straight runs, so measure to the segments
+        float[] coords = levels[0];
+        float toleranceSquared = tolerance * tolerance;
+        if (coords.length == 2) {
+            float dx = coords[0] - x;
+            float dy = coords[1] - y;
+            return dx * dx + dy * dy <= toleranceSquared;
+        }
+        for (int i = 0; i + 3 < coords.length; i += 2) {
+            float distance = StrokeSimplifier.segmentDistanceSquared(x, y,
+                    coords[i], coords[i + 1], coords[i + 2], coords[i + 3]);
+            if (distance <= toleranceSquared) {
                 return true;
             }
         }
         return false;
     }
 
+    @Override
+    protected Bounds computeBounds() {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        float[] coords = levels[0];
+        for (int i = 0; i < coords.length; i += 2) {
+            minX = Math.min(minX, coords[i]);
+            minY = Math.min(minY, coords[i + 1]);
+            maxX = Math.max(maxX, coords[i]);
+            maxY = Math.max(maxY, coords[i + 1]);
+        }
+        return new Bounds(minX, minY, maxX, maxY);
+    }
+
     /**
-     * Get the list of points defining this brush stroke
-     * Used for eraser color updates
+     * Get a read-only view of the points defining this brush stroke.
+     * Point objects are created on access; prefer getX/getY in loops.
      */
     public List<Point> getPoints() {
-        return new ArrayList<>(points);
+        return new AbstractList<Point>() {
+            @Override
+            public Point get(int index) {
+                return new Point(getX(index), getY(index));
+            }
+
+            @Override
+            public int size() {
+                return getPointCount();
+            }
+        };
+    }
+
+    public int getPointCount() {
+        return levels[0].length / 2;
+    }
+
+    public float getX(int index) {
+        return levels[0][index * 2];
+    }
+
+    public float getY(int index) {
+        return levels[0][index * 2 + 1];
+    }
+
+    /**
+     * Read-only view of the interleaved x, y coordinates of the full-detail stroke
+     */
+    public FloatBuffer getCoordinates() {
+        return FloatBuffer.wrap(levels[0]).asReadOnlyBuffer();
+    }
+
+    /**
+     * Create the same stroke in another color without re-simplifying it
+     */
+    public BrushStroke withColor(Color color) {
+        return new BrushStroke(this, color);
+    }
+
+    /**
+     * @return number of precomputed levels of detail, including the full-detail stroke
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * Read-only view of the interleaved x, y coordinates of a level of detail
+     */
+    public FloatBuffer getLevelCoordinates(int level) {
+        return FloatBuffer.wrap(levels[level]).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return simplification error of a level of detail in world units
+     */
+    public float getLevelTolerance(int level) {
+        return levelTolerances[level];
     }
 }
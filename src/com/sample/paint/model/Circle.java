@@ -1,8 +1,8 @@
 package com.sample.paint.model;
 
 import java.awt.Color;
-import com.jogamp.opengl.GL2;
 import com.sample.paint.util.DrawingAlgorithms;
+import com.sample.paint.util.RasterTarget;
 
 public class Circle extends Shape {
     private float centerX;
@@ -22,9 +22,18 @@ public class Circle extends Shape {
         this.radius = Math.min(dx, dy) / 2;
     }
 
+    /**
+     * Create a circle from its exact center and radius, e.g. when copying or loading one
+     */
+    public static Circle fromCenter(float centerX, float centerY, float radius, Color color, boolean filled, float thickness) {
+        Circle circle = new Circle(centerX, centerY, centerX, centerY, color, filled, thickness);
+        circle.radius = radius;
+        return circle;
+    }
+
     @Override
-    public void draw(GL2 gl) {
-        DrawingAlgorithms.midpointCircle(gl, centerX, centerY, radius, color, thickness, filled);
+    public void draw(RasterTarget target) {
+        DrawingAlgorithms.midpointCircle(target, centerX, centerY, radius, color, thickness, filled);
     }
 
     @Override
@@ -33,6 +42,11 @@ public class Circle extends Shape {
         return distance <= radius + tolerance;
     }
 
+    @Override
+    protected Bounds computeBounds() {
+        return new Bounds(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
+    }
+
     // Getter methods for fill tool
     public float getCenterX() {
         return centerX;
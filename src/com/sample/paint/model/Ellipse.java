@@ -1,8 +1,8 @@
 package com.sample.paint.model;
 
 import java.awt.Color;
-import com.jogamp.opengl.GL2;
 import com.sample.paint.util.DrawingAlgorithms;
+import com.sample.paint.util.RasterTarget;
 
 public class Ellipse extends Shape {
     private float centerX;
@@ -18,9 +18,19 @@ public class Ellipse extends Shape {
         this.radiusY = Math.abs(y2 - y1) / 2;
     }
 
+    /**
+     * Create an ellipse from its exact center and radii, e.g. when copying or loading one
+     */
+    public static Ellipse fromCenter(float centerX, float centerY, float radiusX, float radiusY, Color color, boolean filled, float thickness) {
+        Ellipse ellipse = new Ellipse(centerX, centerY, centerX, centerY, color, filled, thickness);
+        ellipse.radiusX = radiusX;
+        ellipse.radiusY = radiusY;
+        return ellipse;
+    }
+
     @Override
-    public void draw(GL2 gl) {
-        DrawingAlgorithms.midpointEllipse(gl, centerX, centerY, radiusX, radiusY, color, thickness, filled);
+    public void draw(RasterTarget target) {
+        DrawingAlgorithms.midpointEllipse(target, centerX, centerY, radiusX, radiusY, color, thickness, filled);
     }
 
     @Override
@@ -30,6 +40,11 @@ public class Ellipse extends Shape {
                Math.abs(y - centerY) <= radiusY + tolerance;
     }
 
+    @Override
+    protected Bounds computeBounds() {
+        return new Bounds(centerX - radiusX, centerY - radiusY, centerX + radiusX, centerY + radiusY);
+    }
+
     // Getter methods for fill tool
     public float getCenterX() {
         return centerX;
@@ -1,13 +1,16 @@
 package com.sample.paint.model;
 
-import com.jogamp.opengl.GL2;
 import java.awt.Color;
+import com.sample.paint.util.DrawingAlgorithms;
+import com.sample.paint.util.RasterTarget;
 
 /**
  * A tool that represents filling a shape with a color
  * This is not a shape itself but used to temporarily visualize the fill operation
  */
 public class FillTool extends Shape {
+    private static final float ICON_SIZE = 0.015f;  // Slightly larger for better visibility
+
     private float x, y;  // Coordinates where to apply the fill
 
     public FillTool(float x, float y, Color color) {
@@ -17,49 +20,22 @@ public class FillTool extends Shape {
     }
 
     @Override
-    public void draw(GL2 gl) {
+    public void draw(RasterTarget target) {
         // Draw a paint bucket icon at the position
-        float size = 0.015f;  // Slightly larger for better visibility
-
-        // Save current color
-        float[] currentColor = new float[4];
-        gl.glGetFloatv(GL2.GL_CURRENT_COLOR, currentColor, 0);
-
-        // Set the fill tool color
-        gl.glColor3f(
-            color.getRed() / 255.0f,
-            color.getGreen() / 255.0f,
-            color.getBlue() / 255.0f
-        );
-
-        // Draw a paint bucket icon (simplified)
-        gl.glLineWidth(2.0f);
+        float size = ICON_SIZE;
+        float lineWidth = 2.0f;
 
         // Draw outer bucket shape
-        gl.glBegin(GL2.GL_LINE_LOOP);
-        gl.glVertex2f(x - size, y - size);
-        gl.glVertex2f(x + size, y - size);
-        gl.glVertex2f(x + size, y + size * 0.7f);
-        gl.glVertex2f(x - size, y + size * 0.7f);
-        gl.glEnd();
+        DrawingAlgorithms.bresenhamLine(target, x - size, y - size, x + size, y - size, color, lineWidth);
+        DrawingAlgorithms.bresenhamLine(target, x + size, y - size, x + size, y + size * 0.7f, color, lineWidth);
+        DrawingAlgorithms.bresenhamLine(target, x + size, y + size * 0.7f, x - size, y + size * 0.7f, color, lineWidth);
+        DrawingAlgorithms.bresenhamLine(target, x - size, y + size * 0.7f, x - size, y - size, color, lineWidth);
 
         // Draw handle
-        gl.glBegin(GL2.GL_LINES);
-        gl.glVertex2f(x, y + size * 0.7f);
-        gl.glVertex2f(x + size * 0.5f, y + size * 1.4f);
-        gl.glEnd();
+        DrawingAlgorithms.bresenhamLine(target, x, y + size * 0.7f, x + size * 0.5f, y + size * 1.4f, color, lineWidth);
 
         // Draw drip
-        gl.glBegin(GL2.GL_LINE_STRIP);
-        gl.glVertex2f(x - size * 0.5f, y - size * 1.5f);
-        gl.glVertex2f(x - size * 0.3f, y - size);
-        gl.glEnd();
-
-        // Reset line width
-        gl.glLineWidth(1.0f);
-
-        // Restore original color
-        gl.glColor3f(currentColor[0], currentColor[1], currentColor[2]);
+        DrawingAlgorithms.bresenhamLine(target, x - size * 0.5f, y - size * 1.5f, x - size * 0.3f, y - size, color, lineWidth);
     }
 
     @Override
@@ -70,6 +46,12 @@ public class FillTool extends Shape {
         return Math.sqrt(dx * dx + dy * dy) <= tolerance;
     }
 
+    @Override
+    protected Bounds computeBounds() {
+        // Extent of the bucket icon including handle and drip
+        return new Bounds(x - ICON_SIZE, y - ICON_SIZE * 1.5f, x + ICON_SIZE, y + ICON_SIZE * 1.4f);
+    }
+
     // Getters for x and y coordinates
     public float getX() {
         return x;
@@ -1,8 +1,8 @@
 package com.sample.paint.model;
 
 import java.awt.Color;
-import com.jogamp.opengl.GL2;
 import com.sample.paint.util.DrawingAlgorithms;
+import com.sample.paint.util.RasterTarget;
 
 public class Line extends Shape {
     private float startX, startY;
@@ -17,15 +17,43 @@ public class Line extends Shape {
     }
 
     @Override
-    public void draw(GL2 gl) {
-        DrawingAlgorithms.bresenhamLine(gl, startX, startY, endX, endY, color, thickness);
+    public void draw(RasterTarget target) {
+        DrawingAlgorithms.bresenhamLine(target, startX, startY, endX, endY, color, thickness);
     }
 
     @Override
     public boolean isPointInside(float x, float y, float tolerance) {
-        // Calculate distance from point to line
-        float dist = (float) (Math.abs((endY - startY) * x - (endX - startX) * y + endX * startY - endY * startX) /
-                Math.sqrt(Math.pow(endY - startY, 2) + Math.pow(endX - startX, 2)));
-        return dist <= tolerance;
+        // Calculate distance from point to the line segment
+        float dx = endX - startX;
+        float dy = endY - startY;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared == 0 ? 0 : ((x - startX) * dx + (y - startY) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+
+        float distX = x - (startX + t * dx);
+        float distY = y - (startY + t * dy);
+        return distX * distX + distY * distY <= tolerance * tolerance;
+    }
+
+    @Override
+    protected Bounds computeBounds() {
+        return new Bounds(Math.min(startX, endX), Math.min(startY, endY),
+                Math.max(startX, endX), Math.max(startY, endY));
+    }
+
+    public float getStartX() {
+        return startX;
+    }
+
+    public float getStartY() {
+        return startY;
+    }
+
+    public float getEndX() {
+        return endX;
+    }
+
+    public float getEndY() {
+        return endY;
     }
 }
@@ -0,0 +1,80 @@
+package com.sample.paint.model;
+
+import java.awt.Color;
+import com.sample.paint.util.DrawingAlgorithms;
+import com.sample.paint.util.RasterTarget;
+
+/**
+ * The brush or eraser stroke currently being drawn.
+ * Points are only ever appended, so each frame rasterizes just the segments added
+ * since the previous frame onto a persistent overlay. On release the collected
+ * samples are handed to a BrushStroke without copying.
+ */
+public class LiveStroke {
+    private PackedPointList points = new PackedPointList();
+    private Color color;
+    private float thickness;
+    private boolean active;
+    private int drawnSegments; // segments already rasterized onto the overlay
+
+    /**
+     * Begin a new stroke at the given point
+     */
+    public synchronized void start(float x, float y, Color color, float thickness) {
+        points.clear();
+        points.add(x, y);
+        this.color = color;
+        this.thickness = thickness;
+        this.active = true;
+        this.drawnSegments = 0;
+    }
+
+    /**
+     * Append a batch of samples given as interleaved x, y floats
+     */
+    public synchronized void addAll(float[] coords, int from, int count) {
+        if (active) {
+            points.addAll(coords, from, count);
+        }
+    }
+
+    public synchronized boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Rasterize the segments added since the last call; a stroke of a single
+     * point, e.g. while the button is held after a click, shows that point
+     */
+    public synchronized void drawPending(RasterTarget target) {
+        if (points.size() == 1) {
+            target.plot(points.getX(0), points.getY(0), color, thickness);
+        }
+        for (int i = drawnSegments; i < points.size() - 1; i++) {
+            DrawingAlgorithms.bresenhamLine(target, points.getX(i), points.getY(i),
+                    points.getX(i + 1), points.getY(i + 1), color, thickness);
+        }
+        drawnSegments = Math.max(points.size() - 1, 0);
+    }
+
+    /**
+     * Forget what was drawn, e.g. after the overlay was cleared; the next drawPending draws everything
+     */
+    public synchronized void resetDrawn() {
+        drawnSegments = 0;
+    }
+
+    /**
+     * End the stroke and hand its samples over to a committed brush stroke
+     * @return the finished stroke, or null if no stroke was active
+     */
+    public synchronized BrushStroke finish(float tolerance) {
+        if (!active) {
+            return null;
+        }
+        active = false;
+        int count = points.size();
+        float[] coords = points.detach();
+        return new BrushStroke(coords, count, color, thickness, tolerance);
+    }
+}
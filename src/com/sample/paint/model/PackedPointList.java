@@ -0,0 +1,88 @@
+package com.sample.paint.model;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable list of 2D points stored as interleaved x, y floats in one array.
+ * Avoids a Point object per sample for long freehand strokes.
+ */
+public class PackedPointList {
+    private static final int DEFAULT_CAPACITY = 64; // points
+
+    private float[] coords;
+    private int size;
+
+    public PackedPointList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PackedPointList(int capacity) {
+        coords = new float[Math.max(capacity, 1) * 2];
+    }
+
+    public void add(float x, float y) {
+        if (size * 2 == coords.length) {
+            coords = Arrays.copyOf(coords, coords.length * 2);
+        }
+        coords[size * 2] = x;
+        coords[size * 2 + 1] = y;
+        size++;
+    }
+
+    /**
+     * Append count points from interleaved x, y floats starting at point index from
+     */
+    public void addAll(float[] source, int from, int count) {
+        if ((size + count) * 2 > coords.length) {
+            coords = Arrays.copyOf(coords, Math.max(coords.length * 2, (size + count) * 2));
+        }
+        System.arraycopy(source, from * 2, coords, size * 2, count * 2);
+        size += count;
+    }
+
+    public float getX(int index) {
+        return coords[index * 2];
+    }
+
+    public float getY(int index) {
+        return coords[index * 2 + 1];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copy the points into a new array of exactly size() * 2 floats
+     */
+    public float[] toArray() {
+        return Arrays.copyOf(coords, size * 2);
+    }
+
+    /**
+     * Hand over the backing array without copying and start over with empty storage.
+     * The first size() * 2 floats of the returned array hold the points.
+     */
+    public float[] detach() {
+        float[] detached = coords;
+        coords = new float[DEFAULT_CAPACITY * 2];
+        size = 0;
+        return detached;
+    }
+
+    /**
+     * Read-only view of the interleaved coordinates, valid until the list is modified
+     */
+    public FloatBuffer asReadOnlyBuffer() {
+        return FloatBuffer.wrap(coords, 0, size * 2).slice().asReadOnlyBuffer();
+    }
+}
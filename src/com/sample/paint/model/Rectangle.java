@@ -1,8 +1,8 @@
 package com.sample.paint.model;
 
 import java.awt.Color;
-import com.jogamp.opengl.GL2;
 import com.sample.paint.util.DrawingAlgorithms;
+import com.sample.paint.util.RasterTarget;
 
 public class Rectangle extends Shape {
     private float x1, y1, x2, y2;
@@ -16,20 +16,20 @@ public class Rectangle extends Shape {
     }
 
     @Override
-    public void draw(GL2 gl) {
+    public void draw(RasterTarget target) {
         float minX = Math.min(x1, x2);
         float maxX = Math.max(x1, x2);
         float minY = Math.min(y1, y2);
         float maxY = Math.max(y1, y2);
 
         if (filled) {
-            DrawingAlgorithms.scanLineFillRect(gl, minX, minY, maxX, maxY, color, thickness);
+            DrawingAlgorithms.scanLineFillRect(target, minX, minY, maxX, maxY, color, thickness);
         } else {
             // Draw outline
-            DrawingAlgorithms.bresenhamLine(gl, minX, minY, maxX, minY, color, thickness); // Bottom
-            DrawingAlgorithms.bresenhamLine(gl, maxX, minY, maxX, maxY, color, thickness); // Right
-            DrawingAlgorithms.bresenhamLine(gl, maxX, maxY, minX, maxY, color, thickness); // Top
-            DrawingAlgorithms.bresenhamLine(gl, minX, maxY, minX, minY, color, thickness); // Left
+            DrawingAlgorithms.bresenhamLine(target, minX, minY, maxX, minY, color, thickness); // Bottom
+            DrawingAlgorithms.bresenhamLine(target, maxX, minY, maxX, maxY, color, thickness); // Right
+            DrawingAlgorithms.bresenhamLine(target, maxX, maxY, minX, maxY, color, thickness); // Top
+            DrawingAlgorithms.bresenhamLine(target, minX, maxY, minX, minY, color, thickness); // Left
         }
     }
 
@@ -39,6 +39,11 @@ public class Rectangle extends Shape {
                 Math.min(y1, y2) - tolerance <= y && y <= Math.max(y1, y2) + tolerance;
     }
 
+    @Override
+    protected Bounds computeBounds() {
+        return new Bounds(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2));
+    }
+
     // Getter methods for fill tool
     public float getX1() {
         return x1;
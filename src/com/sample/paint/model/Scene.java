@@ -0,0 +1,269 @@
+package com.sample.paint.model;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import com.sample.paint.util.PersistentVector;
+
+/**
+ * The drawing shared between the event thread, which edits it, and the render
+ * and background threads, which read it.
+ *
+ * Writers are serialized and each edit publishes a new immutable SceneSnapshot
+ * through a volatile reference. Readers take one snapshot and work on it without
+ * locking; it never changes underneath them, however long they hold it. Every
+ * edit is recorded for undo and reported to the listeners, in order, on the
+ * thread that made it. Undo and redo report the shapes they removed and restored,
+ * found once by comparing the two versions' trees, so listeners can follow them
+ * without looking at the whole scene.
+ */
+public class Scene {
+    /**
+     * Receives every change after it is published, with the new snapshot
+     */
+    public interface Listener {
+        default void shapeAdded(SceneSnapshot scene, Shape shape) {
+        }
+
+        default void shapeReplaced(SceneSnapshot scene, int index, Shape oldShape, Shape newShape) {
+        }
+
+        /**
+         * @param indices positions of the removed shapes before the removal, ascending
+         */
+        default void shapesRemoved(SceneSnapshot scene, int[] indices, List<Shape> removed) {
+        }
+
+        default void backgroundChanged(SceneSnapshot scene) {
+        }
+
+        /**
+         * The whole scene changed at once: cleared, loaded, undone or redone
+         * @param before the version that was replaced
+         * @param difference the shapes removed from before and inserted into scene, or
+         *        null if the versions are unrelated or differ in too many shapes to list
+         */
+        default void sceneReplaced(SceneSnapshot before, SceneSnapshot scene, PersistentVector.Difference<Shape> difference) {
+        }
+    }
+
+    private volatile SceneSnapshot snapshot;
+    private final SceneHistory history;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public Scene() {
+        this(SceneSnapshot.EMPTY, new SceneHistory());
+    }
+
+    public Scene(SceneSnapshot initial, SceneHistory history) {
+        this.snapshot = initial;
+        this.history = history;
+    }
+
+    /**
+     * The current version; safe to read from any thread without locking
+     */
+    public SceneSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public PersistentVector<Shape> getShapes() {
+        return snapshot.getShapes();
+    }
+
+    public Color getBackground() {
+        return snapshot.getBackground();
+    }
+
+    public synchronized boolean canUndo() {
+        return history.canUndo();
+    }
+
+    public synchronized boolean canRedo() {
+        return history.canRedo();
+    }
+
+    /**
+     * @param bytes estimated memory the undo and redo steps may keep alive; the
+     *        oldest steps are dropped at once if they exceed it
+     */
+    public synchronized void setHistoryBudget(long bytes) {
+        history.setMemoryBudget(bytes);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Add a shape on top of the scene
+     */
+    public synchronized void add(Shape shape) {
+        SceneSnapshot before = snapshot;
+        history.record(before, SceneHistory.editBytes(before.getShapes(), null));
+        SceneSnapshot after = publish(before.withShapes(before.getShapes().plus(shape)));
+        for (Listener listener : listeners) {
+            listener.shapeAdded(after, shape);
+        }
+    }
+
+    /**
+     * Replace the shape at the given position, keeping its stacking order
+     */
+    public synchronized void set(int index, Shape shape) {
+        SceneSnapshot before = snapshot;
+        Shape old = before.getShapes().get(index);
+        history.record(before, SceneHistory.editBytes(before.getShapes(), old));
+        SceneSnapshot after = publish(before.withShapes(before.getShapes().with(index, shape)));
+        for (Listener listener : listeners) {
+            listener.shapeReplaced(after, index, old, shape);
+        }
+    }
+
+    /**
+     * Replace a shape, found by identity, keeping its stacking order
+     * @return false if the shape is not in the scene
+     */
+    public synchronized boolean replace(Shape oldShape, Shape newShape) {
+        int index = 0;
+        for (Shape shape : snapshot.getShapes()) {
+            if (shape == oldShape) {
+                set(index, newShape);
+                return true;
+            }
+            index++;
+        }
+        return false;
+    }
+
+    /**
+     * Remove the given shapes, compared by identity
+     */
+    public synchronized void removeAll(Collection<? extends Shape> shapes) {
+        Set<Shape> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+        targets.addAll(shapes);
+
+        SceneSnapshot before = snapshot;
+        int[] indices = new int[targets.size()];
+        List<Shape> removed = new ArrayList<>(targets.size());
+        int index = 0;
+        for (Shape shape : before.getShapes()) {
+            if (removed.size() < indices.length && targets.contains(shape)) {
+                indices[removed.size()] = index;
+                removed.add(shape);
+            }
+            index++;
+        }
+        if (removed.isEmpty()) {
+            return;
+        }
+        int[] removedIndices = removed.size() == indices.length ? indices : Arrays.copyOf(indices, removed.size());
+
+        long bytes = 0;
+        PersistentVector<Shape> remaining = before.getShapes();
+        for (int i = removedIndices.length - 1; i >= 0; i--) {
+            bytes += SceneHistory.editBytes(remaining, remaining.get(removedIndices[i]));
+            remaining = remaining.minus(removedIndices[i]);
+        }
+        history.record(before, bytes);
+        SceneSnapshot after = publish(before.withShapes(remaining));
+        for (Listener listener : listeners) {
+            listener.shapesRemoved(after, removedIndices, removed);
+        }
+    }
+
+    public synchronized void setBackground(Color background) {
+        SceneSnapshot before = snapshot;
+        history.record(before, 0);
+        SceneSnapshot after = publish(before.withBackground(background));
+        for (Listener listener : listeners) {
+            listener.backgroundChanged(after);
+        }
+    }
+
+    /**
+     * Remove every shape, keeping the background
+     */
+    public synchronized void clear() {
+        load(PersistentVector.empty(), snapshot.getBackground());
+    }
+
+    /**
+     * Replace the whole scene, e.g. with a drawing read from a file
+     */
+    public synchronized void load(List<? extends Shape> shapes, Color background) {
+        SceneSnapshot before = snapshot;
+        history.record(before, SceneHistory.sceneBytes(before.getShapes()));
+        replaceAll(new SceneSnapshot(PersistentVector.of(shapes), background), null);
+    }
+
+    /**
+     * Merge the edits until the matching endEdit() into one undo step
+     */
+    public synchronized void beginEdit() {
+        history.beginGroup();
+    }
+
+    public synchronized void endEdit() {
+        history.endGroup();
+    }
+
+    /**
+     * Revert the last edit. Switching versions is O(1).
+     * @return false if there is nothing to undo
+     */
+    public synchronized boolean undo() {
+        SceneSnapshot previous = history.undo(snapshot);
+        if (previous == null) {
+            return false;
+        }
+        replaceAll(previous, difference(snapshot, previous));
+        return true;
+    }
+
+    /**
+     * @return false if there is nothing to redo
+     */
+    public synchronized boolean redo() {
+        SceneSnapshot next = history.redo(snapshot);
+        if (next == null) {
+            return false;
+        }
+        replaceAll(next, difference(snapshot, next));
+        return true;
+    }
+
+    private void replaceAll(SceneSnapshot next, PersistentVector.Difference<Shape> difference) {
+        SceneSnapshot before = snapshot;
+        SceneSnapshot after = publish(next);
+        for (Listener listener : listeners) {
+            listener.sceneReplaced(before, after, difference);
+        }
+    }
+
+    /**
+     * Versions in the history only ever differ by appended, replaced and removed shapes,
+     * so their difference can be found from the nodes they do not share
+     * @return the difference, or null once listing it would cost about as much as
+     *         going through the whole scene
+     */
+    private static PersistentVector.Difference<Shape> difference(SceneSnapshot from, SceneSnapshot to) {
+        int maxNodes = Math.max(64, (from.getShapes().size() + to.getShapes().size()) / 2);
+        return PersistentVector.difference(from.getShapes(), to.getShapes(), maxNodes);
+    }
+
+    private SceneSnapshot publish(SceneSnapshot next) {
+        snapshot = next;
+        return next;
+    }
+}
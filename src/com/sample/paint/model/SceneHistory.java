@@ -0,0 +1,173 @@
+package com.sample.paint.model;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import com.sample.paint.util.PersistentVector;
+
+/**
+ * Undo and redo stacks of scene snapshots.
+ *
+ * Snapshots share structure with the scene they were taken from, so a step costs
+ * only what the edit after it replaced: the copied tree path plus any shapes that
+ * left the scene. The caller estimates that cost when recording a step, and the
+ * oldest steps are dropped once the total exceeds the memory budget.
+ */
+public class SceneHistory {
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    private static final int SHAPE_BYTES = 64; // object header and fields of a shape
+
+    private static class Step {
+        final SceneSnapshot snapshot;
+        long bytes;
+
+        Step(SceneSnapshot snapshot, long bytes) {
+            this.snapshot = snapshot;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Deque<Step> undoSteps = new ArrayDeque<>();
+    private final Deque<Step> redoSteps = new ArrayDeque<>();
+    private long memoryBudget;
+    private long usedBytes;
+    private int groupDepth;
+    private boolean groupRecorded;
+
+    public SceneHistory() {
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param memoryBudget estimated bytes the undo and redo steps may keep alive
+     */
+    public SceneHistory(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Change the budget, dropping the oldest steps at once if they exceed it
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        trim();
+    }
+
+    /**
+     * Remember the scene as it was before an edit. Inside a group only the first
+     * edit creates a step; later ones add their cost to it.
+     * @param bytes estimated memory the snapshot keeps alive once the edit is applied
+     */
+    public void record(SceneSnapshot before, long bytes) {
+        if (groupDepth > 0 && groupRecorded && !undoSteps.isEmpty()) {
+            undoSteps.peek().bytes += bytes;
+            usedBytes += bytes;
+        } else {
+            undoSteps.push(new Step(before, bytes));
+            usedBytes += bytes;
+            groupRecorded = groupDepth > 0;
+        }
+        while (!redoSteps.isEmpty()) {
+            usedBytes -= redoSteps.pop().bytes;
+        }
+        trim();
+    }
+
+    /**
+     * Merge the edits until the matching endGroup() into one step, e.g. one eraser drag
+     */
+    public void beginGroup() {
+        if (groupDepth++ == 0) {
+            groupRecorded = false;
+        }
+    }
+
+    public void endGroup() {
+        if (groupDepth > 0) {
+            groupDepth--;
+        }
+    }
+
+    public boolean canUndo() {
+        return !undoSteps.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoSteps.isEmpty();
+    }
+
+    /**
+     * @return the snapshot before the last edit, or null if there is none
+     */
+    public SceneSnapshot undo(SceneSnapshot current) {
+        return move(undoSteps, redoSteps, current);
+    }
+
+    /**
+     * @return the snapshot the last undo left, or null if there is none
+     */
+    public SceneSnapshot redo(SceneSnapshot current) {
+        return move(redoSteps, undoSteps, current);
+    }
+
+    public void clear() {
+        undoSteps.clear();
+        redoSteps.clear();
+        usedBytes = 0;
+    }
+
+    private SceneSnapshot move(Deque<Step> from, Deque<Step> to, SceneSnapshot current) {
+        Step step = from.poll();
+        if (step == null) {
+            return null;
+        }
+        groupRecorded = false;
+        // Switching versions keeps the other one alive for the same cost
+        to.push(new Step(current, step.bytes));
+        return step.snapshot;
+    }
+
+    /**
+     * Drop the oldest undo steps until the history fits the budget, keeping the latest
+     */
+    private void trim() {
+        while (usedBytes > memoryBudget && undoSteps.size() > 1) {
+            usedBytes -= undoSteps.removeLast().bytes;
+        }
+    }
+
+    /**
+     * Estimated cost of an edit that copies one tree path and removes the given shape, if any
+     */
+    public static long editBytes(PersistentVector<Shape> shapes, Shape removed) {
+        long bytes = (long) (shapes.depth() + 1) * PersistentVector.NODE_BYTES;
+        return removed == null ? bytes : bytes + shapeBytes(removed);
+    }
+
+    /**
+     * Estimated cost of an edit that drops every shape of the scene, e.g. clearing it
+     */
+    public static long sceneBytes(PersistentVector<Shape> shapes) {
+        long bytes = (long) shapes.size() * PersistentVector.NODE_BYTES;
+        for (Shape shape : shapes) {
+            bytes += shapeBytes(shape);
+        }
+        return bytes;
+    }
+
+    /**
+     * Approximate heap size of a shape including its point data
+     */
+    public static long shapeBytes(Shape shape) {
+        long bytes = SHAPE_BYTES;
+        if (shape instanceof BrushStroke) {
+            BrushStroke stroke = (BrushStroke) shape;
+            for (int level = 0; level < stroke.getLevelCount(); level++) {
+                FloatBuffer coords = stroke.getLevelCoordinates(level);
+                bytes += coords.remaining() * 4L;
+            }
+        }
+        return bytes;
+    }
+}
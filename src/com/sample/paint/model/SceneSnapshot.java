@@ -0,0 +1,36 @@
+package com.sample.paint.model;
+
+import java.awt.Color;
+import com.sample.paint.util.PersistentVector;
+
+/**
+ * Immutable version of the drawing: its shapes in draw order and its background.
+ * Versions derived from one another share structure, so keeping many is cheap.
+ */
+public final class SceneSnapshot {
+    public static final SceneSnapshot EMPTY = new SceneSnapshot(PersistentVector.empty(), Color.WHITE);
+
+    private final PersistentVector<Shape> shapes;
+    private final Color background;
+
+    public SceneSnapshot(PersistentVector<Shape> shapes, Color background) {
+        this.shapes = shapes;
+        this.background = background;
+    }
+
+    public PersistentVector<Shape> getShapes() {
+        return shapes;
+    }
+
+    public Color getBackground() {
+        return background;
+    }
+
+    public SceneSnapshot withShapes(PersistentVector<Shape> shapes) {
+        return new SceneSnapshot(shapes, background);
+    }
+
+    public SceneSnapshot withBackground(Color background) {
+        return new SceneSnapshot(shapes, background);
+    }
+}
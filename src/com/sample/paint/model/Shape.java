@@ -2,11 +2,15 @@ package com.sample.paint.model;
 
 import java.awt.Color;
 import com.jogamp.opengl.GL2;
+import com.sample.paint.util.GLRenderer;
+import com.sample.paint.util.PointBatch;
+import com.sample.paint.util.RasterTarget;
 
 public abstract class Shape {
     protected Color color;
     protected float thickness;
     protected boolean filled;
+    private Bounds bounds;
 
     public Shape(Color color, boolean filled, float thickness) {
         this.color = color;
@@ -17,13 +21,57 @@ public abstract class Shape {
     /**
      * Draw this shape using OpenGL
      */
-    public abstract void draw(GL2 gl);
+    public void draw(GL2 gl) {
+        PointBatch batch = GLRenderer.beginPointBatch(gl);
+        draw(batch);
+        batch.flush();
+    }
+
+    /**
+     * Rasterize this shape into any raster target, e.g. a GL point batch or a CPU framebuffer
+     */
+    public abstract void draw(RasterTarget target);
 
     /**
      * Check if the shape contains a point within the given tolerance
      */
     public abstract boolean isPointInside(float x, float y, float tolerance);
 
+    /**
+     * Get the world-space bounding box of the shape's geometry.
+     * Computed once, shapes do not change after construction.
+     */
+    public Bounds getBounds() {
+        if (bounds == null) {
+            bounds = computeBounds();
+        }
+        return bounds;
+    }
+
+    /**
+     * Check if the shape, including its stroke, overlaps a world-space rectangle
+     * @param pixelSize world units per device pixel; thickness is measured in device pixels
+     */
+    public boolean intersects(Bounds view, float pixelSize) {
+        float pad = getStrokePadding(pixelSize);
+        return getBounds().intersects(view.minX - pad, view.minY - pad, view.maxX + pad, view.maxY + pad);
+    }
+
+    /**
+     * World-space margin around getBounds() that rasterized samples may reach
+     * @param pixelSize world units per device pixel
+     */
+    public float getStrokePadding(float pixelSize) {
+        // Points and spans extend half their thickness around the geometry; grid rounding
+        // can move the last sample by up to another half thickness, plus one pixel
+        return (thickness + 1) * pixelSize;
+    }
+
+    /**
+     * Compute the bounding box of the shape's geometry
+     */
+    protected abstract Bounds computeBounds();
+
     // Getters and setters
     public Color getColor() {
         return color;
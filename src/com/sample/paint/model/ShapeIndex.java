@@ -0,0 +1,227 @@
+package com.sample.paint.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over shape bounds used to answer "which shapes are under this point"
+ * without scanning the whole shape list. Shapes remember their stacking order so
+ * results can be returned bottom to top, matching the drawing order. Orders are
+ * spaced apart, so a shape restored by undo can be put back between its neighbors
+ * without renumbering the others.
+ */
+public class ShapeIndex {
+    private static final float CELL_SIZE = 0.1f;         // world units
+    private static final int MAX_CELLS_PER_SHAPE = 4096; // larger shapes are kept in a separate list
+    private static final long ORDER_GAP = 1L << 20;      // between the orders of shapes added on top
+
+    private static class Entry {
+        final Shape shape;
+        long order;
+        final Bounds bounds;
+        final boolean large;
+        int queryStamp;
+
+        Entry(Shape shape, long order) {
+            this.shape = shape;
+            this.order = order;
+            this.bounds = shape.getBounds();
+            this.large = cellCount(bounds) > MAX_CELLS_PER_SHAPE;
+        }
+    }
+
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+    private final Map<Shape, Entry> entries = new IdentityHashMap<>();
+    private final List<Entry> largeEntries = new ArrayList<>();
+    private long nextOrder;
+    private int queryStamp;
+
+    /**
+     * Add a shape on top of all indexed shapes
+     */
+    public void add(Shape shape) {
+        insert(new Entry(shape, nextOrder));
+        nextOrder += ORDER_GAP;
+    }
+
+    /**
+     * Add shapes, bottom to top, between two indexed shapes in stacking order, e.g.
+     * shapes restored by undo
+     * @param below the indexed shape right below them, or null to put them at the bottom
+     * @param above the indexed shape right above them, or null to put them on top
+     */
+    public void insertAll(List<Shape> shapes, Shape below, Shape above) {
+        if (above == null || !entries.containsKey(above)) {
+            for (Shape shape : shapes) {
+                add(shape);
+            }
+            return;
+        }
+        if (!orderGapFits(below, above, shapes.size())) {
+            renumber();
+        }
+        long high = entries.get(above).order;
+        long low = below != null && entries.containsKey(below) ? entries.get(below).order
+                : high - (shapes.size() + 1) * ORDER_GAP;
+        long step = (high - low) / (shapes.size() + 1);
+        long order = low;
+        for (Shape shape : shapes) {
+            order += step;
+            insert(new Entry(shape, order));
+        }
+    }
+
+    /**
+     * Swap a shape for another one at the same stacking position
+     */
+    public void replace(Shape oldShape, Shape newShape) {
+        Entry old = entries.get(oldShape);
+        if (old == null) {
+            add(newShape);
+            return;
+        }
+        delete(old);
+        insert(new Entry(newShape, old.order));
+    }
+
+    public void remove(Shape shape) {
+        Entry entry = entries.get(shape);
+        if (entry != null) {
+            delete(entry);
+        }
+    }
+
+    /**
+     * @return true if the orders between two shapes leave room for count more
+     */
+    private boolean orderGapFits(Shape below, Shape above, int count) {
+        Entry low = below == null ? null : entries.get(below);
+        return low == null || (entries.get(above).order - low.order) / (count + 1) > 0;
+    }
+
+    /**
+     * Space the orders of all shapes evenly again, keeping their stacking order
+     */
+    private void renumber() {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort((a, b) -> Long.compare(a.order, b.order));
+        nextOrder = 0;
+        for (Entry entry : sorted) {
+            entry.order = nextOrder;
+            nextOrder += ORDER_GAP;
+        }
+    }
+
+    public void clear() {
+        cells.clear();
+        entries.clear();
+        largeEntries.clear();
+        nextOrder = 0;
+    }
+
+    /**
+     * Index the given shapes, bottom to top, replacing the current contents
+     */
+    public void rebuild(List<Shape> shapes) {
+        clear();
+        for (Shape shape : shapes) {
+            add(shape);
+        }
+    }
+
+    /**
+     * Find the shapes for which isPointInside(x, y, tolerance) holds
+     * @return matching shapes ordered bottom to top
+     */
+    public List<Shape> query(float x, float y, float tolerance) {
+        int stamp = ++queryStamp;
+        List<Entry> hits = new ArrayList<>();
+
+        int cx0 = cell(x - tolerance), cx1 = cell(x + tolerance);
+        int cy0 = cell(y - tolerance), cy1 = cell(y + tolerance);
+        for (int cx = cx0; cx <= cx1; cx++) {
+            for (int cy = cy0; cy <= cy1; cy++) {
+                List<Entry> bucket = cells.get(key(cx, cy));
+                if (bucket != null) {
+                    collect(bucket, x, y, tolerance, stamp, hits);
+                }
+            }
+        }
+        collect(largeEntries, x, y, tolerance, stamp, hits);
+
+        hits.sort((a, b) -> Long.compare(a.order, b.order));
+        List<Shape> result = new ArrayList<>(hits.size());
+        for (Entry entry : hits) {
+            result.add(entry.shape);
+        }
+        return result;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static void collect(List<Entry> candidates, float x, float y, float tolerance, int stamp, List<Entry> hits) {
+        for (Entry entry : candidates) {
+            if (entry.queryStamp == stamp) {
+                continue; // Already seen in another cell
+            }
+            entry.queryStamp = stamp;
+            if (entry.bounds.contains(x, y, tolerance) && entry.shape.isPointInside(x, y, tolerance)) {
+                hits.add(entry);
+            }
+        }
+    }
+
+    private void insert(Entry entry) {
+        entries.put(entry.shape, entry);
+        if (entry.large) {
+            largeEntries.add(entry);
+            return;
+        }
+        Bounds b = entry.bounds;
+        for (int cx = cell(b.minX); cx <= cell(b.maxX); cx++) {
+            for (int cy = cell(b.minY); cy <= cell(b.maxY); cy++) {
+                cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>()).add(entry);
+            }
+        }
+    }
+
+    private void delete(Entry entry) {
+        entries.remove(entry.shape);
+        if (entry.large) {
+            largeEntries.remove(entry);
+            return;
+        }
+        Bounds b = entry.bounds;
+        for (int cx = cell(b.minX); cx <= cell(b.maxX); cx++) {
+            for (int cy = cell(b.minY); cy <= cell(b.maxY); cy++) {
+                Long key = key(cx, cy);
+                List<Entry> bucket = cells.get(key);
+                if (bucket != null) {
+                    bucket.remove(entry);
+                    if (bucket.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long cellCount(Bounds b) {
+        long columns = (long) cell(b.maxX) - cell(b.minX) + 1;
+        long rows = (long) cell(b.maxY) - cell(b.minY) + 1;
+        return columns * rows;
+    }
+
+    private static int cell(float coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static Long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}
@@ -1,8 +1,8 @@
 package com.sample.paint.model;
 
 import java.awt.Color;
-import com.jogamp.opengl.GL2;
 import com.sample.paint.util.DrawingAlgorithms;
+import com.sample.paint.util.RasterTarget;
 
 public class Triangle extends Shape {
     private float x1, y1; // First point (fixed at startX, startY)
@@ -29,25 +29,40 @@ public class Triangle extends Shape {
         float perpX = -dy;
         float perpY = dx;
 
-        // Normalize and scale to get the third point
+        // Normalize and scale to get the third point; a click without a drag has no
+        // direction, so the third point then coincides with the first instead of being NaN
         float perpLength = (float) Math.sqrt(perpX * perpX + perpY * perpY);
-        perpX = perpX / perpLength * distance;
-        perpY = perpY / perpLength * distance;
+        if (perpLength > 0) {
+            perpX = perpX / perpLength * distance;
+            perpY = perpY / perpLength * distance;
+        }
 
         // Set the third point
         this.x3 = x1 + perpX;
         this.y3 = y1 + perpY;
     }
 
+    /**
+     * Create a triangle from all three vertices, e.g. when loading one; the third
+     * vertex is taken as given instead of being derived from the first two
+     */
+    public static Triangle fromVertices(float x1, float y1, float x2, float y2, float x3, float y3,
+            Color color, boolean filled, float thickness) {
+        Triangle triangle = new Triangle(x1, y1, x2, y2, color, filled, thickness);
+        triangle.x3 = x3;
+        triangle.y3 = y3;
+        return triangle;
+    }
+
     @Override
-    public void draw(GL2 gl) {
+    public void draw(RasterTarget target) {
         if (filled) {
-            DrawingAlgorithms.fillTriangle(gl, x1, y1, x2, y2, x3, y3, color, thickness);
+            DrawingAlgorithms.fillTriangle(target, x1, y1, x2, y2, x3, y3, color, thickness);
         } else {
             // Draw outline using three lines
-            DrawingAlgorithms.bresenhamLine(gl, x1, y1, x2, y2, color, thickness);
-            DrawingAlgorithms.bresenhamLine(gl, x2, y2, x3, y3, color, thickness);
-            DrawingAlgorithms.bresenhamLine(gl, x3, y3, x1, y1, color, thickness);
+            DrawingAlgorithms.bresenhamLine(target, x1, y1, x2, y2, color, thickness);
+            DrawingAlgorithms.bresenhamLine(target, x2, y2, x3, y3, color, thickness);
+            DrawingAlgorithms.bresenhamLine(target, x3, y3, x1, y1, color, thickness);
         }
     }
 
@@ -66,6 +81,12 @@ public class Triangle extends Shape {
         return Math.min(Math.min(d1, d2), d3) <= tolerance;
     }
 
+    @Override
+    protected Bounds computeBounds() {
+        return new Bounds(Math.min(x1, Math.min(x2, x3)), Math.min(y1, Math.min(y2, y3)),
+                Math.max(x1, Math.max(x2, x3)), Math.max(y1, Math.max(y2, y3)));
+    }
+
     // Helper method to calculate if a point is inside the triangle
     private boolean isPointInTriangle(float px, float py) {
         // Barycentric coordinate method
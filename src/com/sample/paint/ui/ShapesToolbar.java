@@ -19,6 +19,8 @@ public class ShapesToolbar extends JToolBar {
     private JRadioButton shapeEraserRadio;
     private JPanel eraserPanel;
     private JButton clearCanvasButton;
+    private JButton undoButton;
+    private JButton redoButton;
     private ActionListener mainAppListener; // To notify the main app about toolbar state changes
 
     /**
@@ -98,7 +100,7 @@ public class ShapesToolbar extends JToolBar {
         add(Box.createVerticalStrut(10));
 
         // Add buttons for file operations (like save)
-        JPanel filePanel = new JPanel(new GridLayout(2, 1, 5, 5));
+        JPanel filePanel = new JPanel(new GridLayout(5, 1, 5, 5));
         filePanel.setOpaque(false);
         filePanel.setBorder(BorderFactory.createTitledBorder("File Operations"));
 
@@ -128,11 +130,53 @@ public class ShapesToolbar extends JToolBar {
             clearCanvasButton.setText("Clear Canvas");
         }
 
+        // Create export button for rendering at any resolution
+        JButton exportButton = new JButton("Export");
+        exportButton.setActionCommand("ExportImage");
+        exportButton.addActionListener(actionListener);
+        exportButton.setToolTipText("Export Drawing at Custom Resolution");
+
+        // Create buttons for opening and saving editable drawings
+        JButton openDrawingButton = new JButton("Open");
+        openDrawingButton.setActionCommand("OpenDrawing");
+        openDrawingButton.addActionListener(actionListener);
+        openDrawingButton.setToolTipText("Open Drawing");
+
+        JButton saveDrawingButton = new JButton("Save Drawing");
+        saveDrawingButton.setActionCommand("SaveDrawing");
+        saveDrawingButton.addActionListener(actionListener);
+        saveDrawingButton.setToolTipText("Save Drawing for Later Editing");
+
+        filePanel.add(openDrawingButton);
+        filePanel.add(saveDrawingButton);
         filePanel.add(saveButton);
+        filePanel.add(exportButton);
         filePanel.add(clearCanvasButton);
         add(filePanel);
         add(Box.createVerticalStrut(10));
 
+        // Undo and redo, also bound to Ctrl+Z and Ctrl+Y on the canvas
+        JPanel editPanel = new JPanel(new GridLayout(1, 2, 5, 5));
+        editPanel.setOpaque(false);
+        editPanel.setBorder(BorderFactory.createTitledBorder("Edit"));
+
+        undoButton = new JButton("Undo");
+        undoButton.setEnabled(false);
+        undoButton.setActionCommand("Undo");
+        undoButton.addActionListener(actionListener);
+        undoButton.setToolTipText("Undo (Ctrl+Z)");
+
+        redoButton = new JButton("Redo");
+        redoButton.setEnabled(false);
+        redoButton.setActionCommand("Redo");
+        redoButton.addActionListener(actionListener);
+        redoButton.setToolTipText("Redo (Ctrl+Y)");
+
+        editPanel.add(undoButton);
+        editPanel.add(redoButton);
+        add(editPanel);
+        add(Box.createVerticalStrut(10));
+
         // Color picker panel with foreground and background color options
         JPanel colorPanel = new JPanel(new GridLayout(2, 2, 5, 5));
         colorPanel.setOpaque(false);
@@ -326,4 +370,12 @@ public class ShapesToolbar extends JToolBar {
         revalidate();
         repaint();
     }
+
+    /**
+     * Enable the Undo and Redo buttons according to the scene's history
+     */
+    public void setUndoRedoEnabled(boolean canUndo, boolean canRedo) {
+        undoButton.setEnabled(canUndo);
+        redoButton.setEnabled(canRedo);
+    }
 }
@@ -1,24 +1,114 @@
 package com.sample.paint.util;
 
 import java.awt.Color;
-import com.jogamp.opengl.GL2;
-import com.sample.paint.model.Point;
+import com.sample.paint.model.Bounds;
 
+/**
+ * Rasterization routines. Each primitive is stepped on a grid derived from the
+ * target's pixel size, so it emits about one sample per covered device pixel at
+ * any zoom level. Samples outside the target's clip bounds are skipped, so a
+ * shape drawn once per tile costs about its share of the tile.
+ */
 public class DrawingAlgorithms {
+    // Finest grid step in world units; bounds the work for extreme zoom levels
+    private static final float MIN_GRID_STEP = 1e-5f;
+    // Samples per device pixel is slightly above one, so rounding can never leave a pixel row uncovered
+    private static final float PIXEL_STEP = 0.75f;
+
+    /**
+     * Grid step for outlines: about one device pixel, or half the point size for
+     * thick points, which still overlap their neighbours
+     */
+    static float outlineStep(RasterTarget target, float thickness) {
+        return gridStep(target.getPixelSize() * PIXEL_STEP * Math.max(1, thickness / 2));
+    }
+
+    /**
+     * Grid step between scan lines of filled shapes: about one device pixel
+     */
+    static float rowStep(RasterTarget target) {
+        return gridStep(target.getPixelSize() * PIXEL_STEP);
+    }
+
+    private static float gridStep(float step) {
+        // Also catches a NaN or non-positive pixel size
+        return step > MIN_GRID_STEP ? step : MIN_GRID_STEP;
+    }
+
+    /**
+     * @return false if a shape with these bounds, grown by one grid step for rounding,
+     *         cannot reach the clip bounds
+     */
+    private static boolean mayShow(Bounds clip, float minX, float minY, float maxX, float maxY, float step) {
+        return clip == null || clip.intersects(minX - step, minY - step, maxX + step, maxY + step);
+    }
+
+    private static void plot(RasterTarget target, Bounds clip, float x, float y, Color color, float thickness) {
+        if (clip == null || clip.contains(x, y, 0)) {
+            target.plot(x, y, color, thickness);
+        }
+    }
+
+    private static void span(RasterTarget target, Bounds clip, float x1, float x2, float y, Color color, float thickness) {
+        if (clip == null || clip.intersects(Math.min(x1, x2), y, Math.max(x1, x2), y)) {
+            target.span(x1, x2, y, color, thickness);
+        }
+    }
+
+    /**
+     * @return the first row of a scan that can reach the clip bounds
+     */
+    private static int firstRow(Bounds clip, float minY, float step) {
+        return clip == null ? 0 : Math.max(0, (int) Math.floor((clip.minY - minY) / step));
+    }
+
+    /**
+     * @return the last row, at most rows, of a scan that can reach the clip bounds
+     */
+    private static int lastRow(Bounds clip, float minY, float step, int rows) {
+        return clip == null ? rows : Math.min(rows, (int) Math.ceil((clip.maxY - minY) / step));
+    }
 
     /**
      * Implements Bresenham's line drawing algorithm
      */
-    public static void bresenhamLine(GL2 gl, float x1, float y1, float x2, float y2, Color color, float thickness) {
-        int x0 = Math.round(x1 * 1000), y0 = Math.round(y1 * 1000);
-        int xEnd = Math.round(x2 * 1000), yEnd = Math.round(y2 * 1000);
-        int dx = Math.abs(xEnd - x0), dy = Math.abs(yEnd - y0);
-        int sx = x0 < xEnd ? 1 : -1, sy = y0 < yEnd ? 1 : -1;
-        int err = dx - dy;
+    public static void bresenhamLine(RasterTarget target, float x1, float y1, float x2, float y2, Color color, float thickness) {
+        target.beginRoutine("bresenhamLine");
+        // Step on a grid anchored at the start point, so the line starts exactly at (x1, y1)
+        float step = outlineStep(target, thickness);
+        Bounds clip = target.getClipBounds(thickness);
+        if (!mayShow(clip, Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2), step)) {
+            return;
+        }
+        int xEnd = Math.round((x2 - x1) / step), yEnd = Math.round((y2 - y1) / step);
+        int dx = Math.abs(xEnd), dy = Math.abs(yEnd);
+        int sx = 0 < xEnd ? 1 : -1, sy = 0 < yEnd ? 1 : -1;
 
-        while (true) {
-            GLRenderer.drawPoint(gl, x0 / 1000.0f, y0 / 1000.0f, color, thickness);
-            if (x0 == xEnd && y0 == yEnd) break;
+        // Every iteration takes one grid step along the major axis, so the line has
+        // max(dx, dy) + 1 samples; only the iterations that can reach the clip are run
+        int steps = Math.max(dx, dy);
+        double[] range = {0, steps};
+        if (clip != null) {
+            narrowToClip(range, x1, sx, dx, steps, clip.minX, clip.maxX, step);
+            narrowToClip(range, y1, sy, dy, steps, clip.minY, clip.maxY, step);
+        }
+        int first = (int) Math.max(0, Math.floor(range[0]));
+        int last = (int) Math.min(steps, Math.ceil(range[1]));
+        if (first > last) {
+            return;
+        }
+
+        // Bresenham state after the first iterations: the minor axis has taken the
+        // rounded share of the major steps, and err follows from both
+        long major = first;
+        long minor = steps == 0 ? 0 : Math.floorDiv(2 * major * Math.min(dx, dy) + steps - 1, 2L * steps);
+        long nx = dx >= dy ? major : minor, ny = dx >= dy ? minor : major;
+        int x0 = (int) (sx * nx), y0 = (int) (sy * ny);
+        int err = (int) (dx - dy - nx * dy + ny * dx);
+
+        for (int i = first; ; i++) {
+            plot(target, clip, x1 + x0 * step, y1 + y0 * step, color, thickness);
+            if (i >= last) break;
 
             int e2 = 2 * err;
             if (e2 > -dy) {
@@ -32,34 +122,71 @@ public class DrawingAlgorithms {
         }
     }
 
+    /**
+     * Narrows the iteration range of a line to the iterations whose samples can lie in
+     * [min, max] on one axis. Iteration i is within a grid step of start + sign * i * d / steps
+     * grid steps on that axis.
+     */
+    private static void narrowToClip(double[] range, float start, int sign, int d, int steps, float min, float max, float step) {
+        double lo = (sign > 0 ? min - start : start - max) / step - 1;
+        double hi = (sign > 0 ? max - start : start - min) / step + 1;
+        if (d == 0) {
+            if (lo > 0 || hi < 0) {
+                range[0] = 1;
+                range[1] = 0;
+            }
+            return;
+        }
+        range[0] = Math.max(range[0], lo * steps / d);
+        range[1] = Math.min(range[1], hi * steps / d);
+    }
+
     /**
      * Draws a filled rectangle using scan line algorithm
      */
-    public static void scanLineFillRect(GL2 gl, float x1, float y1, float x2, float y2, Color color, float thickness) {
+    public static void scanLineFillRect(RasterTarget target, float x1, float y1, float x2, float y2, Color color, float thickness) {
+        target.beginRoutine("scanLineFillRect");
         float minX = Math.min(x1, x2), maxX = Math.max(x1, x2);
         float minY = Math.min(y1, y2), maxY = Math.max(y1, y2);
 
-        for (float y = minY; y <= maxY; y += 0.001f) {
-            for (float x = minX; x <= maxX; x += 0.001f) {
-                GLRenderer.drawPoint(gl, x, y, color, thickness);
-            }
+        // One span per device pixel row, skipping the rows outside the clip bounds
+        float step = rowStep(target);
+        Bounds clip = target.getClipBounds(thickness);
+        if (!mayShow(clip, minX, minY, maxX, maxY, step)) {
+            return;
+        }
+        int rows = Math.round((maxY - minY) / step);
+        int last = lastRow(clip, minY, step, rows);
+        for (int row = firstRow(clip, minY, step); row <= last; row++) {
+            target.span(minX, maxX, minY + row * step, color, thickness);
         }
     }
 
     /**
      * Implementation of Midpoint Circle Algorithm
      */
-    public static void midpointCircle(GL2 gl, float xc, float yc, float radius, Color color, float thickness, boolean filled) {
-        int r = Math.round(radius * 1000);
+    public static void midpointCircle(RasterTarget target, float xc, float yc, float radius, Color color, float thickness, boolean filled) {
+        target.beginRoutine("midpointCircle");
+        float step = filled ? rowStep(target) : outlineStep(target, thickness);
+        Bounds clip = target.getClipBounds(thickness);
+        if (!mayShow(clip, xc - radius, yc - radius, xc + radius, yc + radius, step)) {
+            return;
+        }
+        int r = Math.round(radius / step);
         int x = 0;
         int y = r;
         int d = 1 - r;
 
         while (x <= y) {
             if (filled) {
-                drawScanLineFillCircle(gl, xc, yc, x, y, color, thickness);
+                // Rows at +-x get a new row every step; rows at +-y only once y is about to move,
+                // when they have reached their widest extent
+                drawScanLineFillCircle(target, clip, xc, yc, y, x, step, color, thickness);
+                if (d >= 0 && x != y) {
+                    drawScanLineFillCircle(target, clip, xc, yc, x, y, step, color, thickness);
+                }
             } else {
-                plotCirclePoints(gl, xc, yc, x, y, color, thickness);
+                plotCirclePoints(target, clip, xc, yc, x, y, step, color, thickness);
             }
 
             if (d < 0) {
@@ -75,55 +202,54 @@ public class DrawingAlgorithms {
     /**
      * Helper method for plotting circle points
      */
-    private static void plotCirclePoints(GL2 gl, float xc, float yc, int x, int y, Color color, float thickness) {
-        float xScaled = x / 1000.0f;
-        float yScaled = y / 1000.0f;
-        GLRenderer.drawPoint(gl, xc + xScaled, yc + yScaled, color, thickness);
-        GLRenderer.drawPoint(gl, xc - xScaled, yc + yScaled, color, thickness);
-        GLRenderer.drawPoint(gl, xc + xScaled, yc - yScaled, color, thickness);
-        GLRenderer.drawPoint(gl, xc - xScaled, yc - yScaled, color, thickness);
-        GLRenderer.drawPoint(gl, xc + yScaled, yc + xScaled, color, thickness);
-        GLRenderer.drawPoint(gl, xc - yScaled, yc + xScaled, color, thickness);
-        GLRenderer.drawPoint(gl, xc + yScaled, yc - xScaled, color, thickness);
-        GLRenderer.drawPoint(gl, xc - yScaled, yc - xScaled, color, thickness);
+    private static void plotCirclePoints(RasterTarget target, Bounds clip, float xc, float yc, int x, int y, float step, Color color, float thickness) {
+        float xScaled = x * step;
+        float yScaled = y * step;
+        plot(target, clip, xc + xScaled, yc + yScaled, color, thickness);
+        plot(target, clip, xc - xScaled, yc + yScaled, color, thickness);
+        plot(target, clip, xc + xScaled, yc - yScaled, color, thickness);
+        plot(target, clip, xc - xScaled, yc - yScaled, color, thickness);
+        plot(target, clip, xc + yScaled, yc + xScaled, color, thickness);
+        plot(target, clip, xc - yScaled, yc + xScaled, color, thickness);
+        plot(target, clip, xc + yScaled, yc - xScaled, color, thickness);
+        plot(target, clip, xc - yScaled, yc - xScaled, color, thickness);
     }
 
     /**
-     * Helper method for filled circle
+     * Helper method for filled circle: emits the spans of half width x on the rows +-y
      */
-    private static void drawScanLineFillCircle(GL2 gl, float xc, float yc, int x, int y, Color color, float thickness) {
-        float xScaled = x / 1000.0f;
-        float yScaled = y / 1000.0f;
-
-        // Draw horizontal lines between symmetric points
-        for (float i = -xScaled; i <= xScaled; i += 0.001f) {
-            GLRenderer.drawPoint(gl, xc + i, yc + yScaled, color, thickness);
-            GLRenderer.drawPoint(gl, xc + i, yc - yScaled, color, thickness);
-        }
-        for (float i = -yScaled; i <= yScaled; i += 0.001f) {
-            GLRenderer.drawPoint(gl, xc + i, yc + xScaled, color, thickness);
-            GLRenderer.drawPoint(gl, xc + i, yc - xScaled, color, thickness);
-        }
+    private static void drawScanLineFillCircle(RasterTarget target, Bounds clip, float xc, float yc, int x, int y, float step, Color color, float thickness) {
+        drawSymmetricSpans(target, clip, xc, yc, x, y, step, color, thickness);
     }
 
     /**
      * Implementation of Midpoint Ellipse Algorithm
      */
-    public static void midpointEllipse(GL2 gl, float xc, float yc, float rx, float ry, Color color, float thickness, boolean filled) {
-        int rxInt = Math.round(rx * 1000);
-        int ryInt = Math.round(ry * 1000);
+    public static void midpointEllipse(RasterTarget target, float xc, float yc, float rx, float ry, Color color, float thickness, boolean filled) {
+        target.beginRoutine("midpointEllipse");
+        float step = filled ? rowStep(target) : outlineStep(target, thickness);
+        Bounds clip = target.getClipBounds(thickness);
+        if (!mayShow(clip, xc - rx, yc - ry, xc + rx, yc + ry, step)) {
+            return;
+        }
+        int rxInt = Math.round(rx / step);
+        int ryInt = Math.round(ry / step);
         int x = 0;
         int y = ryInt;
         long rx2 = (long) rxInt * rxInt;
         long ry2 = (long) ryInt * ryInt;
 
-        // Region 1
+        // Region 1; bounded by rx too, as the slope test holds forever when both radii round to zero
         long p1 = ry2 - rx2 * ryInt + rx2 / 4;
-        while (ry2 * x <= rx2 * y) {
+        while (x <= rxInt && ry2 * x <= rx2 * y) {
             if (filled) {
-                drawScanLineFillEllipse(gl, xc, yc, x, y, color, thickness);
+                // Several steps share a row here; fill it once y is about to move.
+                // A row still pending at the end of region 1 is filled by region 2.
+                if (p1 >= 0) {
+                    drawScanLineFillEllipse(target, clip, xc, yc, x, y, step, color, thickness);
+                }
             } else {
-                plotEllipsePoints(gl, xc, yc, x, y, color, thickness);
+                plotEllipsePoints(target, clip, xc, yc, x, y, step, color, thickness);
             }
 
             if (p1 < 0) {
@@ -140,9 +266,9 @@ public class DrawingAlgorithms {
         long p2 = (long) (ry2 * (x + 0.5f) * (x + 0.5f) + rx2 * (y - 1) * (y - 1) - rx2 * ry2);
         while (y >= 0) {
             if (filled) {
-                drawScanLineFillEllipse(gl, xc, yc, x, y, color, thickness);
+                drawScanLineFillEllipse(target, clip, xc, yc, x, y, step, color, thickness);
             } else {
-                plotEllipsePoints(gl, xc, yc, x, y, color, thickness);
+                plotEllipsePoints(target, clip, xc, yc, x, y, step, color, thickness);
             }
 
             if (p2 > 0) {
@@ -159,33 +285,40 @@ public class DrawingAlgorithms {
     /**
      * Helper method for plotting ellipse points
      */
-    private static void plotEllipsePoints(GL2 gl, float xc, float yc, int x, int y, Color color, float thickness) {
-        float xScaled = x / 1000.0f;
-        float yScaled = y / 1000.0f;
-        GLRenderer.drawPoint(gl, xc + xScaled, yc + yScaled, color, thickness);
-        GLRenderer.drawPoint(gl, xc - xScaled, yc + yScaled, color, thickness);
-        GLRenderer.drawPoint(gl, xc + xScaled, yc - yScaled, color, thickness);
-        GLRenderer.drawPoint(gl, xc - xScaled, yc - yScaled, color, thickness);
+    private static void plotEllipsePoints(RasterTarget target, Bounds clip, float xc, float yc, int x, int y, float step, Color color, float thickness) {
+        float xScaled = x * step;
+        float yScaled = y * step;
+        plot(target, clip, xc + xScaled, yc + yScaled, color, thickness);
+        plot(target, clip, xc - xScaled, yc + yScaled, color, thickness);
+        plot(target, clip, xc + xScaled, yc - yScaled, color, thickness);
+        plot(target, clip, xc - xScaled, yc - yScaled, color, thickness);
     }
 
     /**
-     * Helper method for filled ellipse
+     * Helper method for filled ellipse: emits the spans of half width x on the rows +-y
      */
-    private static void drawScanLineFillEllipse(GL2 gl, float xc, float yc, int x, int y, Color color, float thickness) {
-        float xScaled = x / 1000.0f;
-        float yScaled = y / 1000.0f;
+    private static void drawScanLineFillEllipse(RasterTarget target, Bounds clip, float xc, float yc, int x, int y, float step, Color color, float thickness) {
+        drawSymmetricSpans(target, clip, xc, yc, x, y, step, color, thickness);
+    }
 
-        // Draw horizontal lines between symmetric points
-        for (float i = -xScaled; i <= xScaled; i += 0.001f) {
-            GLRenderer.drawPoint(gl, xc + i, yc + yScaled, color, thickness);
-            GLRenderer.drawPoint(gl, xc + i, yc - yScaled, color, thickness);
+    /**
+     * Emits the spans [xc - x, xc + x] on rows yc + y and yc - y, once if y is zero
+     */
+    private static void drawSymmetricSpans(RasterTarget target, Bounds clip, float xc, float yc, int x, int y, float step, Color color, float thickness) {
+        float xScaled = x * step;
+        float yScaled = y * step;
+
+        span(target, clip, xc - xScaled, xc + xScaled, yc + yScaled, color, thickness);
+        if (y != 0) {
+            span(target, clip, xc - xScaled, xc + xScaled, yc - yScaled, color, thickness);
         }
     }
 
     /**
      * Fills a triangle using scan line algorithm
      */
-    public static void fillTriangle(GL2 gl, float x1, float y1, float x2, float y2, float x3, float y3, Color color, float thickness) {
+    public static void fillTriangle(RasterTarget target, float x1, float y1, float x2, float y2, float x3, float y3, Color color, float thickness) {
+        target.beginRoutine("fillTriangle");
         // Sort vertices by y-coordinate (y1 <= y2 <= y3)
         if (y1 > y2) {
             float tempX = x1; x1 = x2; x2 = tempX;
@@ -200,32 +333,42 @@ public class DrawingAlgorithms {
             float tempY = y1; y1 = y2; y2 = tempY;
         }
 
-        // Calculate slopes of the three edges
-        float dx1 = 0, dx2 = 0, dx3 = 0;
-        if (y2 - y1 > 0) dx1 = (x2 - x1) / (y2 - y1);
-        if (y3 - y1 > 0) dx2 = (x3 - x1) / (y3 - y1);
-        if (y3 - y2 > 0) dx3 = (x3 - x2) / (y3 - y2);
-
-        // Start and end points for scan lines
-        float sx = x1, ex = x1;
-
-        // First part of the triangle (between y1 and y2)
-        for (float y = y1; y <= y2; y += 0.001f) {
-            for (float x = Math.min(sx, ex); x <= Math.max(sx, ex); x += 0.001f) {
-                GLRenderer.drawPoint(gl, x, y, color, thickness);
+        // Intersect each scan line with the long edge (1-3) and the active short edge,
+        // skipping the rows outside the clip bounds
+        float step = rowStep(target);
+        Bounds clip = target.getClipBounds(thickness);
+        if (!mayShow(clip, Math.min(x1, Math.min(x2, x3)), y1, Math.max(x1, Math.max(x2, x3)), y3, step)) {
+            return;
+        }
+        int rows = Math.round((y3 - y1) / step);
+        int last = lastRow(clip, y1, step, rows);
+        for (int row = firstRow(clip, y1, step); row <= last; row++) {
+            float y = y1 + row * step;
+            float xLong = edgeX(x1, y1, x3, y3, y);
+            float xShort = y < y2 ? edgeX(x1, y1, x2, y2, y) : edgeX(x2, y2, x3, y3, y);
+            float left = Math.min(xLong, xShort);
+            float right = Math.max(xLong, xShort);
+            // A horizontal edge lies on a single row, which must cover all of it
+            if (row == 0 && y2 == y1) {
+                left = Math.min(left, Math.min(x1, x2));
+                right = Math.max(right, Math.max(x1, x2));
             }
-            sx += dx1 * 0.001f;
-            ex += dx2 * 0.001f;
+            if (row == rows && y3 == y2) {
+                left = Math.min(left, Math.min(x2, x3));
+                right = Math.max(right, Math.max(x2, x3));
+            }
+            target.span(left, right, y, color, thickness);
         }
+    }
 
-        // Second part of the triangle (between y2 and y3)
-        sx = x2;
-        for (float y = y2; y <= y3; y += 0.001f) {
-            for (float x = Math.min(sx, ex); x <= Math.max(sx, ex); x += 0.001f) {
-                GLRenderer.drawPoint(gl, x, y, color, thickness);
-            }
-            sx += dx3 * 0.001f;
-            ex += dx2 * 0.001f;
+    /**
+     * X coordinate where the edge (xa, ya)-(xb, yb) crosses the scan line y
+     */
+    private static float edgeX(float xa, float ya, float xb, float yb, float y) {
+        if (yb - ya == 0) {
+            return Math.min(xa, xb);
         }
+        float t = Math.max(0, Math.min(1, (y - ya) / (yb - ya)));
+        return xa + (xb - xa) * t;
     }
 }
@@ -0,0 +1,56 @@
+package com.sample.paint.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one rendered canvas frame; its duration is the time
+ * spent in display(). Record with e.g.
+ * -XX:StartFlightRecording=settings=profile,filename=paint.jfr
+ */
+@Name("com.sample.paint.Frame")
+@Label("Canvas Frame")
+@Category({ "OpenGL Paint", "Rendering" })
+@Description("One rendered frame of the paint canvas")
+@StackTrace(false)
+public class FrameEvent extends Event {
+    @Label("Scene Rebuilt")
+    @Description("The committed shapes were rasterized again instead of reusing the cached layer")
+    boolean sceneRebuilt;
+
+    @Label("Shapes")
+    int shapes;
+
+    @Label("Shapes Drawn")
+    int shapesDrawn;
+
+    @Label("Shapes Culled")
+    int shapesCulled;
+
+    @Label("Points")
+    long points;
+
+    @Label("Spans")
+    long spans;
+
+    @Label("Batch Draw Calls")
+    long batchDraws;
+
+    @Label("Draw Calls")
+    @Description("OpenGL draw calls made during the frame, by the point batch and immediate mode")
+    long drawCalls;
+
+    @Label("Vertices")
+    @Description("Vertices submitted by the frame's draw calls")
+    long vertices;
+
+    @Label("Input Latency")
+    @Description("Time from the last drag event presented by this frame to the end of the frame, or -1")
+    @Timespan(Timespan.NANOSECONDS)
+    long inputLatency;
+}
@@ -0,0 +1,175 @@
+package com.sample.paint.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-frame renderer statistics: render time, frame rate, shapes drawn and
+ * culled, points and spans emitted, draw calls and vertices submitted, and the
+ * latency from the last drag event to the frame that presented it. Draw calls and
+ * vertices are counted where the geometry is submitted, see GLRenderer.countDraws,
+ * so measuring does not slow the frames measured.
+ *
+ * Collected on the render thread between beginFrame() and endFrame(); each
+ * finished frame is also committed as a FrameEvent when Flight Recorder is
+ * recording it. The status text may be read from any thread.
+ */
+public class FrameStats {
+    private static final double SMOOTHING = 0.1; // weight of the newest frame in the averages
+
+    private final PointBatch batch;
+
+    // Frame in progress
+    private FrameEvent event;
+    private long frameStart;
+    private long startPoints;
+    private long startSpans;
+    private long startDraws;
+    private long startGLDraws;
+    private long startVertices;
+    private boolean frameSceneRebuilt;
+    private int frameShapesDrawn;
+    private int frameShapesCulled;
+    private long frameInputLatency;
+
+    // Last finished frame
+    private long frameNanos;
+    private boolean sceneRebuilt;
+    private int shapes;
+    private int shapesDrawn;
+    private int shapesCulled;
+    private long points;
+    private long spans;
+    private long batchDraws;
+    private long drawCalls;
+    private long vertices;
+    private long inputLatencyNanos = -1;
+    private long lastInputLatencyNanos = -1; // of the latest frame that presented input
+
+    private long previousFrameStart;
+    private double averageFrameMillis;
+    private double averageIntervalMillis;
+    private volatile String statusText = "";
+
+    /**
+     * @param batch point batch whose running totals are sampled at frame boundaries
+     */
+    public FrameStats(PointBatch batch) {
+        this.batch = batch;
+    }
+
+    public void beginFrame() {
+        event = new FrameEvent();
+        event.begin();
+        frameStart = System.nanoTime();
+        startPoints = batch.getPointTotal();
+        startSpans = batch.getSpanTotal();
+        startDraws = batch.getDrawTotal();
+        startGLDraws = GLRenderer.getDrawTotal();
+        startVertices = GLRenderer.getVertexTotal();
+        frameSceneRebuilt = false;
+        frameShapesDrawn = 0;
+        frameShapesCulled = 0;
+        frameInputLatency = -1;
+    }
+
+    /**
+     * The committed shapes were rasterized in this frame instead of reused from the cache
+     */
+    public void sceneDrawn(int drawn, int culled) {
+        frameSceneRebuilt = true;
+        frameShapesDrawn += drawn;
+        frameShapesCulled += culled;
+    }
+
+    /**
+     * @param latencyNanos time from the drag event to now
+     */
+    public void inputPresented(long latencyNanos) {
+        frameInputLatency = latencyNanos;
+    }
+
+    /**
+     * @param sceneShapes shapes in the scene version drawn
+     */
+    public void endFrame(int sceneShapes) {
+        long now = System.nanoTime();
+        frameNanos = now - frameStart;
+        shapes = sceneShapes;
+        sceneRebuilt = frameSceneRebuilt;
+        shapesDrawn = frameShapesDrawn;
+        shapesCulled = frameShapesCulled;
+        inputLatencyNanos = frameInputLatency;
+        if (inputLatencyNanos >= 0) {
+            lastInputLatencyNanos = inputLatencyNanos;
+        }
+        points = batch.getPointTotal() - startPoints;
+        spans = batch.getSpanTotal() - startSpans;
+        batchDraws = batch.getDrawTotal() - startDraws;
+        drawCalls = GLRenderer.getDrawTotal() - startGLDraws;
+        vertices = GLRenderer.getVertexTotal() - startVertices;
+
+        double frameMillis = frameNanos / 1e6;
+        averageFrameMillis = averageFrameMillis == 0 ? frameMillis
+                : averageFrameMillis + SMOOTHING * (frameMillis - averageFrameMillis);
+        if (previousFrameStart != 0) {
+            double intervalMillis = (frameStart - previousFrameStart) / 1e6;
+            averageIntervalMillis = averageIntervalMillis == 0 ? intervalMillis
+                    : averageIntervalMillis + SMOOTHING * (intervalMillis - averageIntervalMillis);
+        }
+        previousFrameStart = frameStart;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.sceneRebuilt = sceneRebuilt;
+            event.shapes = shapes;
+            event.shapesDrawn = shapesDrawn;
+            event.shapesCulled = shapesCulled;
+            event.points = points;
+            event.spans = spans;
+            event.batchDraws = batchDraws;
+            event.drawCalls = drawCalls;
+            event.vertices = vertices;
+            event.inputLatency = inputLatencyNanos;
+            event.commit();
+        }
+        event = null;
+
+        statusText = String.format("Frame: %.1f ms, %.0f fps%s", averageFrameMillis, getFramesPerSecond(),
+                lastInputLatencyNanos >= 0 ? String.format(" | Input latency: %.1f ms", lastInputLatencyNanos / 1e6) : "");
+    }
+
+    /**
+     * Frames rendered per second while frames are being requested back to back;
+     * rendering is on demand, so idle periods lower it
+     */
+    public double getFramesPerSecond() {
+        return averageIntervalMillis > 0 ? 1000 / averageIntervalMillis : 0;
+    }
+
+    /**
+     * Summary of the last frame for the status bar
+     */
+    public String getStatusText() {
+        return statusText;
+    }
+
+    /**
+     * Detailed report of the last finished frame for the on-canvas overlay; render thread only
+     */
+    public List<String> getOverlayLines() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("frame   %6.2f ms  (avg %.2f ms, %.0f fps)",
+                frameNanos / 1e6, averageFrameMillis, getFramesPerSecond()));
+        lines.add(sceneRebuilt
+                ? String.format("shapes  %d drawn, %d culled of %d", shapesDrawn, shapesCulled, shapes)
+                : String.format("shapes  %d, scene layer reused", shapes));
+        lines.add(String.format("raster  %d points, %d spans", points, spans));
+        lines.add(String.format("GL      %d draw calls (%d batched), %d vertices",
+                drawCalls, batchDraws, vertices));
+        lines.add(lastInputLatencyNanos >= 0
+                ? String.format("input   %.2f ms from last drag to frame", lastInputLatencyNanos / 1e6)
+                : "input   -");
+        return lines;
+    }
+}
@@ -1,22 +1,53 @@
 package com.sample.paint.util;
 
 import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2ES3;
+import com.jogamp.opengl.GL3ES3;
 import com.jogamp.opengl.GLException;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import javax.imageio.ImageIO;
+import java.util.zip.Deflater;
 
 /**
- * Utility class for reading pixel data from OpenGL and saving it to image files
+ * Utility class for reading pixel data from OpenGL and saving it to image files.
+ * The readback buffer is reused between reads, and the pixels are wrapped as an
+ * image raster without per-pixel conversion or encoded through PngWriter.
+ *
+ * startRead and finishRead read asynchronously: the pixels go into a pixel
+ * buffer object, and a fence tells a later frame when they can be mapped
+ * without stalling the GPU. Where fences are unavailable startRead reads at once.
  */
 public class GLReadBufferUtil {
-    private ByteBuffer pixelBuffer;
+    // Pixels per band handed to the PNG encoder, as in SceneExporter
+    private static final int BAND_PIXELS = 1 << 20;
+
+    private ByteBuffer readBuffer; // direct buffer receiving glReadPixels, reused between reads
+    private byte[] pixels;         // RGB(A) rows, top row first after a flipped read
     private int width;
     private int height;
     private boolean hasAlpha;
 
+    // Asynchronous readback: a pixel buffer object, reused between reads, and the fence after its read
+    private int packBuffer;
+    private int packBufferSize;
+    private long fence;
+    private boolean flipPending;
+    private boolean readComplete; // startRead fell back to a synchronous read
+
     public GLReadBufferUtil(boolean hasAlpha) {
         this.hasAlpha = hasAlpha;
     }
@@ -37,60 +68,57 @@ public class GLReadBufferUtil {
             return false;
         }
 
-        // Allocate buffer to hold the pixels
-        int bytesPerPixel = hasAlpha ? 4 : 3;
-        pixelBuffer = ByteBuffer.allocate(width * height * bytesPerPixel);
+        // Reuse the read buffer while it is large enough
+        int size = width * (hasAlpha ? 4 : 3) * height;
+        if (readBuffer == null || readBuffer.capacity() < size) {
+            readBuffer = ByteBuffer.allocateDirect(size);
+        }
 
-        // Read the pixels
+        // Read tightly packed rows; RGB rows are not always a multiple of 4 bytes
+        readBuffer.clear();
+        gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 1);
         gl.glReadPixels(0, 0, width, height,
                 hasAlpha ? GL.GL_RGBA : GL.GL_RGB,
-                GL.GL_UNSIGNED_BYTE, pixelBuffer);
-
-        // Flip the image vertically if requested (OpenGL has origin at bottom-left)
-        if (flip && pixelBuffer != null) {
-            flipImageVertically();
-        }
+                GL.GL_UNSIGNED_BYTE, readBuffer);
+        gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 4);
 
+        setPixels(readBuffer, width, height, flip);
         return true;
     }
 
     /**
-     * Flip the image data vertically
+     * Take pixels read by other means, e.g. from a pixel buffer object or a
+     * headless benchmark, as if readPixels had returned them
+     * @param source tightly packed RGB(A) rows, bottom row first as OpenGL returns them
      */
-    private void flipImageVertically() {
-        int bytesPerPixel = hasAlpha ? 4 : 3;
-        int rowSize = width * bytesPerPixel;
-        byte[] rowBuffer = new byte[rowSize];
-
-        // Get a copy of the buffer for manipulation
-        byte[] data = pixelBuffer.array();
-
-        // Swap rows (top with bottom, etc.)
-        for (int i = 0; i < height / 2; i++) {
-            int topIdx = i * rowSize;
-            int botIdx = (height - i - 1) * rowSize;
-
-            // Copy top row to temp buffer
-            System.arraycopy(data, topIdx, rowBuffer, 0, rowSize);
-
-            // Copy bottom row to top
-            System.arraycopy(data, botIdx, data, topIdx, rowSize);
-
-            // Copy temp buffer (original top) to bottom
-            System.arraycopy(rowBuffer, 0, data, botIdx, rowSize);
+    public void setPixels(ByteBuffer source, int width, int height, boolean flip) {
+        this.width = width;
+        this.height = height;
+        int rowSize = width * (hasAlpha ? 4 : 3);
+        int size = rowSize * height;
+        if (pixels == null || pixels.length != size) {
+            pixels = new byte[size];
         }
 
-        // Update the pixel buffer with flipped data
-        pixelBuffer.clear();
-        pixelBuffer.put(data);
-        pixelBuffer.rewind();
+        // Copy out of the buffer, reversing the row order while copying if requested
+        // (OpenGL has origin at bottom-left)
+        if (flip) {
+            for (int row = 0; row < height; row++) {
+                source.position((height - 1 - row) * rowSize);
+                source.get(pixels, row * rowSize, rowSize);
+            }
+        } else {
+            source.position(0);
+            source.get(pixels, 0, size);
+        }
     }
 
     /**
-     * Convert pixel data to a BufferedImage
+     * Wrap the pixel data as a BufferedImage without copying. The image shares its
+     * storage with this reader and is overwritten by the next read.
      */
     public BufferedImage toBufferedImage() {
-        if (pixelBuffer == null) {
+        if (pixels == null) {
             throw new GLException("No pixel data available");
         }
 
@@ -99,53 +127,166 @@ public class GLReadBufferUtil {
             throw new GLException("Invalid dimensions: width=" + width + ", height=" + height);
         }
 
-        // Create a BufferedImage with the appropriate type
-        int type = hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
-        BufferedImage image = new BufferedImage(width, height, type);
+        // Interleaved bytes in GL order: R, G, B and optionally A
+        int bytesPerPixel = hasAlpha ? 4 : 3;
+        int[] bandOffsets = hasAlpha ? new int[] { 0, 1, 2, 3 } : new int[] { 0, 1, 2 };
+        WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(pixels, pixels.length),
+                width, height, width * bytesPerPixel, bytesPerPixel, bandOffsets, null);
+        ColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+                hasAlpha, false, hasAlpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE,
+                DataBuffer.TYPE_BYTE);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
 
-        // Get the pixel data as bytes
-        byte[] bytes = pixelBuffer.array();
+    /**
+     * Write the pixel data to a PNG file
+     * @return true if writing was successful, false if there is no pixel data
+     */
+    public boolean write(File file) throws IOException {
+        if (pixels == null || width <= 0 || height <= 0) {
+            return false;
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            writePng(out, Deflater.DEFAULT_COMPRESSION, null);
+        }
+        return true;
+    }
 
-        // Fill the image pixel by pixel
+    /**
+     * Encode the pixel data as an opaque PNG, a band of rows at a time, with the
+     * parallel PngWriter; alpha is dropped. Interrupting the writing thread cancels
+     * with an InterruptedIOException.
+     * @param compressionLevel Deflater level, 0 (none) to 9 (smallest)
+     * @param listener progress callback after every band, may be null
+     */
+    public void writePng(OutputStream out, int compressionLevel, SceneExporter.ProgressListener listener)
+            throws IOException {
+        if (pixels == null || width <= 0 || height <= 0) {
+            throw new IOException("No pixel data available");
+        }
         int bytesPerPixel = hasAlpha ? 4 : 3;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int i = (y * width + x) * bytesPerPixel;
-                int argb;
-
-                if (hasAlpha) {
-                    // RGBA format
-                    int r = bytes[i] & 0xff;
-                    int g = bytes[i + 1] & 0xff;
-                    int b = bytes[i + 2] & 0xff;
-                    int a = bytes[i + 3] & 0xff;
-                    argb = (a << 24) | (r << 16) | (g << 8) | b;
-                } else {
-                    // RGB format
-                    int r = bytes[i] & 0xff;
-                    int g = bytes[i + 1] & 0xff;
-                    int b = bytes[i + 2] & 0xff;
-                    argb = (0xff << 24) | (r << 16) | (g << 8) | b;
-                }
+        int bandHeight = Math.max(1, Math.min(height, BAND_PIXELS / width));
+        int[] band = new int[width * bandHeight];
 
-                image.setRGB(x, y, argb);
+        try (PngWriter png = new PngWriter(out, width, height, compressionLevel)) {
+            for (int y = 0; y < height; y += bandHeight) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Save cancelled");
+                }
+                int rows = Math.min(bandHeight, height - y);
+                int source = y * width * bytesPerPixel;
+                for (int i = 0; i < rows * width; i++, source += bytesPerPixel) {
+                    band[i] = (pixels[source] & 0xff) << 16 | (pixels[source + 1] & 0xff) << 8
+                            | (pixels[source + 2] & 0xff);
+                }
+                png.writeRows(band, 0, rows);
+                if (listener != null) {
+                    listener.rowsWritten(y + rows, height);
+                }
             }
         }
+    }
+
+    /**
+     * Start reading the pixels from the current OpenGL context into a pixel
+     * buffer object, without waiting for the GPU to draw them
+     * @return true if a read was started, false if the viewport is empty or a read is pending
+     */
+    public boolean startRead(GL gl, boolean flip) {
+        if (isReadPending()) {
+            return false;
+        }
+        if (!gl.isGL3ES3()) {
+            readComplete = readPixels(gl, flip);
+            return readComplete;
+        }
 
-        return image;
+        int[] viewport = new int[4];
+        gl.glGetIntegerv(GL.GL_VIEWPORT, viewport, 0);
+        if (viewport[2] <= 0 || viewport[3] <= 0) {
+            return false;
+        }
+        width = viewport[2];
+        height = viewport[3];
+        flipPending = flip;
+
+        // Grow the pixel buffer object only when the viewport outgrows it
+        int size = width * (hasAlpha ? 4 : 3) * height;
+        if (packBuffer == 0) {
+            int[] buffers = new int[1];
+            gl.glGenBuffers(1, buffers, 0);
+            packBuffer = buffers[0];
+        }
+        gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, packBuffer);
+        if (packBufferSize < size) {
+            gl.glBufferData(GL2ES3.GL_PIXEL_PACK_BUFFER, size, null, GL2ES3.GL_STREAM_READ);
+            packBufferSize = size;
+        }
+        gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 1);
+        gl.glReadPixels(0, 0, width, height,
+                hasAlpha ? GL.GL_RGBA : GL.GL_RGB,
+                GL.GL_UNSIGNED_BYTE, 0L);
+        gl.glPixelStorei(GL.GL_PACK_ALIGNMENT, 4);
+        gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, 0);
+        fence = gl.getGL3ES3().glFenceSync(GL3ES3.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        return true;
     }
 
     /**
-     * Write the pixel data to a file
-     * @return true if writing was successful, false otherwise
+     * @return true while a read started by startRead has not been finished
      */
-    public boolean write(File file) throws IOException {
-        try {
-            BufferedImage image = toBufferedImage();
-            String formatName = "PNG";
-            return ImageIO.write(image, formatName, file);
-        } catch (GLException e) {
+    public boolean isReadPending() {
+        return fence != 0 || readComplete;
+    }
+
+    /**
+     * Collect the pixels of a read started by startRead if the GPU is done with
+     * it; never waits. Call again on a later frame while the read is pending.
+     * @return true if the pixels are now available through toBufferedImage
+     */
+    public boolean finishRead(GL gl) {
+        if (readComplete) {
+            readComplete = false;
+            return true;
+        }
+        if (fence == 0) {
+            return false;
+        }
+        GL3ES3 gl3 = gl.getGL3ES3();
+        int status = gl3.glClientWaitSync(fence, GL3ES3.GL_SYNC_FLUSH_COMMANDS_BIT, 0);
+        if (status == GL3ES3.GL_TIMEOUT_EXPIRED) {
+            return false;
+        }
+        gl3.glDeleteSync(fence);
+        fence = 0;
+        if (status == GL3ES3.GL_WAIT_FAILED) {
             return false;
         }
+
+        int size = width * (hasAlpha ? 4 : 3) * height;
+        gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, packBuffer);
+        ByteBuffer mapped = gl.glMapBufferRange(GL2ES3.GL_PIXEL_PACK_BUFFER, 0, size, GL.GL_MAP_READ_BIT);
+        if (mapped != null) {
+            setPixels(mapped, width, height, flipPending);
+            gl.glUnmapBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER);
+        }
+        gl.glBindBuffer(GL2ES3.GL_PIXEL_PACK_BUFFER, 0);
+        return mapped != null;
+    }
+
+    /**
+     * Release the pixel buffer object and any pending fence; the context must be current
+     */
+    public void dispose(GL gl) {
+        if (fence != 0) {
+            gl.getGL3ES3().glDeleteSync(fence);
+            fence = 0;
+        }
+        if (packBuffer != 0) {
+            gl.glDeleteBuffers(1, new int[] { packBuffer }, 0);
+            packBuffer = 0;
+            packBufferSize = 0;
+        }
+        readComplete = false;
     }
 }
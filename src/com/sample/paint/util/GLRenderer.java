@@ -1,9 +1,58 @@
 package com.sample.paint.util;
 
 import java.awt.Color;
+import java.util.List;
 import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.util.gl2.GLUT;
+import com.sample.paint.model.Bounds;
 
 public class GLRenderer {
+    private static final PointBatch pointBatch = new PointBatch();
+    private static final GLUT glut = new GLUT();
+    // World units per device pixel of the projection set by the last setupViewport call
+    private static float pixelSize = 0.001f;
+    // Geometry submitted outside the point batch, for frame statistics; render thread only
+    private static long immediateDraws;
+    private static long immediateVertices;
+
+    /**
+     * Returns the shared point batch bound to the given context.
+     * Callers must flush it before issuing other GL drawing commands.
+     */
+    public static PointBatch beginPointBatch(GL2 gl) {
+        pointBatch.begin(gl, pixelSize);
+        return pointBatch;
+    }
+
+    /**
+     * The shared point batch, e.g. to read its running totals
+     */
+    public static PointBatch getPointBatch() {
+        return pointBatch;
+    }
+
+    /**
+     * Count geometry drawn outside the point batch. Counting where the geometry is
+     * submitted keeps frame statistics free of a wrapper around every GL call.
+     */
+    public static void countDraws(int draws, int vertices) {
+        immediateDraws += draws;
+        immediateVertices += vertices;
+    }
+
+    /**
+     * @return draw calls submitted since startup, by the point batch and immediate mode
+     */
+    public static long getDrawTotal() {
+        return pointBatch.getDrawTotal() + immediateDraws;
+    }
+
+    /**
+     * @return vertices submitted since startup, by the point batch and immediate mode
+     */
+    public static long getVertexTotal() {
+        return pointBatch.getVertexTotal() + immediateVertices;
+    }
 
     /**
      * Draws a point at the specified coordinates with given color and thickness
@@ -14,6 +63,7 @@ public class GLRenderer {
         gl.glBegin(GL2.GL_POINTS);
         gl.glVertex2f(x, y);
         gl.glEnd();
+        countDraws(1, 1);
         gl.glPointSize(1.0f); // Reset point size
     }
 
@@ -29,6 +79,7 @@ public class GLRenderer {
         gl.glBegin(GL2.GL_POINTS);
         gl.glVertex2f(x, y);
         gl.glEnd();
+        countDraws(1, 1);
 
         // Draw additional points in a small circle pattern for better coverage
         float r = thickness / 200.0f; // Small radius based on thickness
@@ -40,6 +91,7 @@ public class GLRenderer {
             gl.glBegin(GL2.GL_POINTS);
             gl.glVertex2f(x + offsetX, y + offsetY);
             gl.glEnd();
+            countDraws(1, 1);
         }
 
         // Reset point size to default
@@ -81,6 +133,7 @@ public class GLRenderer {
         }
 
         gl.glEnd();
+        countDraws(1, segments);
         gl.glLineWidth(1.0f);
 
         // Restore original color
@@ -102,19 +155,25 @@ public class GLRenderer {
         gl.glMatrixMode(GL2.GL_PROJECTION);
         gl.glLoadIdentity();
 
-        float aspectRatio = (float) width / height;
-
         // Apply zoom and pan to the projection matrix
-        gl.glOrtho(
+        Bounds view = getViewBounds(width, height, zoomFactor, panX, panY);
+        gl.glOrtho(view.minX, view.maxX, view.minY, view.maxY, -1.0, 1.0);
+        pixelSize = view.getHeight() / height;
+
+        gl.glMatrixMode(GL2.GL_MODELVIEW);
+    }
+
+    /**
+     * Computes the world-space rectangle shown by setupViewport for the same arguments
+     */
+    public static Bounds getViewBounds(int width, int height, float zoomFactor, float panX, float panY) {
+        float aspectRatio = (float) width / height;
+        return new Bounds(
             -aspectRatio / zoomFactor + panX,  // left
+            -1.0f / zoomFactor + panY,         // bottom
             aspectRatio / zoomFactor + panX,   // right
-            -1.0 / zoomFactor + panY,          // bottom
-            1.0 / zoomFactor + panY,           // top
-            -1.0,                              // near
-            1.0                                // far
+            1.0f / zoomFactor + panY           // top
         );
-
-        gl.glMatrixMode(GL2.GL_MODELVIEW);
     }
 
     /**
@@ -137,6 +196,46 @@ public class GLRenderer {
         gl.glClear(GL2.GL_COLOR_BUFFER_BIT);
     }
 
+    /**
+     * Draws lines of text in the top-left corner of the window over a translucent
+     * panel, independent of the current projection
+     */
+    public static void drawTextOverlay(GL2 gl, int width, int height, List<String> lines) {
+        int lineHeight = 15;
+        int panelWidth = 0;
+        for (String line : lines) {
+            panelWidth = Math.max(panelWidth, glut.glutBitmapLength(GLUT.BITMAP_8_BY_13, line));
+        }
+        int panelHeight = lines.size() * lineHeight + 8;
+        panelWidth += 12;
+
+        gl.glMatrixMode(GL2.GL_PROJECTION);
+        gl.glPushMatrix();
+        gl.glLoadIdentity();
+        gl.glOrtho(0, width, 0, height, -1, 1);
+        gl.glMatrixMode(GL2.GL_MODELVIEW);
+        gl.glPushMatrix();
+        gl.glLoadIdentity();
+
+        gl.glEnable(GL2.GL_BLEND);
+        gl.glBlendFunc(GL2.GL_SRC_ALPHA, GL2.GL_ONE_MINUS_SRC_ALPHA);
+        gl.glColor4f(0.0f, 0.0f, 0.0f, 0.6f);
+        gl.glRecti(4, height - 4 - panelHeight, 4 + panelWidth, height - 4);
+        countDraws(1, 4);
+        gl.glDisable(GL2.GL_BLEND);
+
+        gl.glColor3f(1.0f, 1.0f, 1.0f);
+        for (int i = 0; i < lines.size(); i++) {
+            gl.glRasterPos2i(10, height - 4 - (i + 1) * lineHeight);
+            glut.glutBitmapString(GLUT.BITMAP_8_BY_13, lines.get(i));
+        }
+
+        gl.glPopMatrix();
+        gl.glMatrixMode(GL2.GL_PROJECTION);
+        gl.glPopMatrix();
+        gl.glMatrixMode(GL2.GL_MODELVIEW);
+    }
+
     /**
      * Clears the screen with white background (for backward compatibility)
      */
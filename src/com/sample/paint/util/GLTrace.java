@@ -0,0 +1,365 @@
+package com.sample.paint.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A recorded sequence of OpenGL calls, split into frames, and its file format.
+ *
+ * Arguments are kept as boxed primitives. Arrays and buffers are recorded by
+ * type and size only, as JOGL's trace does not print their contents.
+ *
+ * The file is gzip compressed; inside, after a magic number and version, every
+ * call is a varint string id for its name, an argument count and tagged
+ * arguments, with ints and longs as zigzag varints. A string id one past the
+ * last one defined is followed by the string, so each name is stored once.
+ * Frames end with a 0 varint in place of a call.
+ */
+public class GLTrace {
+    public static final String EXTENSION = "gltrace";
+    private static final int MAGIC = 0x474c5452; // "GLTR"
+    private static final int VERSION = 1;
+    private static final int END_FRAME = 0;
+    private static final int FIRST_STRING_ID = 1;
+
+    /**
+     * An argument whose value the trace does not contain, e.g. an array or buffer
+     */
+    public static final class Opaque {
+        private final String type;
+        private final String kind;
+        private final int size;
+
+        /**
+         * @param type declared parameter type, e.g. "[F" or "java.nio.Buffer"
+         * @param kind class of the value passed, e.g. "java.nio.DirectFloatBufferU", or empty if unknown
+         * @param size elements remaining in a buffer, or -1 if unknown
+         */
+        public Opaque(String type, String kind, int size) {
+            this.type = type;
+            this.kind = kind;
+            this.size = size;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Opaque && ((Opaque) other).type.equals(type)
+                    && ((Opaque) other).kind.equals(kind) && ((Opaque) other).size == size;
+        }
+
+        @Override
+        public int hashCode() {
+            return type.hashCode() * 31 + size;
+        }
+
+        @Override
+        public String toString() {
+            return "<" + type + (kind.isEmpty() ? "" : " " + kind) + (size >= 0 ? "[" + size + "]" : "") + ">";
+        }
+    }
+
+    /**
+     * One call: the GL function and its arguments
+     */
+    public static final class Call {
+        private final String name;
+        private final Object[] args;
+
+        public Call(String name, Object[] args) {
+            this.name = name;
+            this.args = args;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Object[] getArgs() {
+            return args;
+        }
+
+        /**
+         * @return the argument as an int, e.g. a GL enum or count
+         */
+        public int intArg(int index) {
+            return ((Number) args[index]).intValue();
+        }
+
+        /**
+         * @return true if both calls set the same function to the same arguments
+         */
+        public boolean sameAs(Call other) {
+            return name.equals(other.name) && Arrays.equals(args, other.args);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(name).append('(');
+            for (int i = 0; i < args.length; i++) {
+                text.append(i > 0 ? ", " : "").append(args[i]);
+            }
+            return text.append(')').toString();
+        }
+    }
+
+    private final List<List<Call>> frames = new ArrayList<>();
+
+    public void addFrame(List<Call> calls) {
+        frames.add(calls);
+    }
+
+    public List<List<Call>> getFrames() {
+        return frames;
+    }
+
+    public int getCallCount() {
+        int count = 0;
+        for (List<Call> frame : frames) {
+            count += frame.size();
+        }
+        return count;
+    }
+
+    /**
+     * Parse one argument as printed by JOGL's trace, e.g. "<int> 0x1406" or "<[F>"
+     */
+    public static Object parseArgument(String text) {
+        int close = text.indexOf('>');
+        String type = text.substring(1, close);
+        String value = close + 2 <= text.length() ? text.substring(close + 2) : "";
+        switch (type) {
+            case "int":
+                return value.startsWith("0x") ? Integer.parseUnsignedInt(value.substring(2), 16) : Integer.parseInt(value);
+            case "long":
+                return value.startsWith("0x") ? Long.parseUnsignedLong(value.substring(2), 16) : Long.parseLong(value);
+            case "float":
+                return Float.parseFloat(value);
+            case "double":
+                return Double.parseDouble(value);
+            case "boolean":
+                return Boolean.parseBoolean(value);
+            case "byte":
+                return Byte.parseByte(value);
+            case "short":
+                return Short.parseShort(value);
+            default:
+                // Buffers print as e.g. "java.nio.DirectFloatBufferU[pos=0 lim=8 cap=8]"
+                int bracket = value.indexOf('[');
+                String kind = bracket >= 0 ? value.substring(0, bracket) : value.equals("null") ? "null" : "";
+                int limit = value.indexOf("lim=");
+                int size = -1;
+                if (limit >= 0) {
+                    int end = limit + 4;
+                    while (end < value.length() && Character.isDigit(value.charAt(end))) {
+                        end++;
+                    }
+                    size = Integer.parseInt(value.substring(limit + 4, end));
+                }
+                return new Opaque(type, kind, size);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            Map<String, Integer> strings = new HashMap<>();
+            for (List<Call> frame : frames) {
+                for (Call call : frame) {
+                    writeString(out, strings, call.name);
+                    out.writeByte(call.args.length);
+                    for (Object arg : call.args) {
+                        writeArgument(out, strings, arg);
+                    }
+                }
+                writeVarint(out, END_FRAME);
+            }
+        }
+    }
+
+    public static GLTrace read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a GL trace: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported GL trace version " + version + ": " + file);
+            }
+            GLTrace trace = new GLTrace();
+            List<String> strings = new ArrayList<>();
+            List<Call> frame = new ArrayList<>();
+            while (true) {
+                int id;
+                try {
+                    id = readVarint(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (id == END_FRAME) {
+                    trace.addFrame(frame);
+                    frame = new ArrayList<>();
+                    continue;
+                }
+                String name = readString(in, strings, id);
+                Object[] args = new Object[in.readUnsignedByte()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = readArgument(in, strings);
+                }
+                frame.add(new Call(name, args));
+            }
+            if (!frame.isEmpty()) {
+                trace.addFrame(frame);
+            }
+            return trace;
+        }
+    }
+
+    private static void writeArgument(DataOutputStream out, Map<String, Integer> strings, Object arg) throws IOException {
+        if (arg instanceof Integer) {
+            out.writeByte('I');
+            writeVarint(out, zigzag((Integer) arg));
+        } else if (arg instanceof Long) {
+            out.writeByte('J');
+            writeVarLong(out, zigzag((Long) arg));
+        } else if (arg instanceof Float) {
+            out.writeByte('F');
+            out.writeFloat((Float) arg);
+        } else if (arg instanceof Double) {
+            out.writeByte('D');
+            out.writeDouble((Double) arg);
+        } else if (arg instanceof Boolean) {
+            out.writeByte('Z');
+            out.writeBoolean((Boolean) arg);
+        } else if (arg instanceof Byte) {
+            out.writeByte('B');
+            out.writeByte((Byte) arg);
+        } else if (arg instanceof Short) {
+            out.writeByte('S');
+            writeVarint(out, zigzag((Short) arg));
+        } else {
+            Opaque opaque = (Opaque) arg;
+            out.writeByte('L');
+            writeString(out, strings, opaque.type);
+            writeString(out, strings, opaque.kind);
+            writeVarint(out, opaque.size + 1);
+        }
+    }
+
+    private static Object readArgument(DataInputStream in, List<String> strings) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'I': return unzigzag(readVarint(in));
+            case 'J': return unzigzag(readVarLong(in));
+            case 'F': return in.readFloat();
+            case 'D': return in.readDouble();
+            case 'Z': return in.readBoolean();
+            case 'B': return in.readByte();
+            case 'S': return (short) unzigzag(readVarint(in));
+            case 'L': {
+                String type = readString(in, strings, readVarint(in));
+                String kind = readString(in, strings, readVarint(in));
+                return new Opaque(type, kind, readVarint(in) - 1);
+            }
+            default:
+                throw new IOException("Corrupt GL trace: argument tag " + tag);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, Map<String, Integer> strings, String value) throws IOException {
+        Integer id = strings.get(value);
+        if (id != null) {
+            writeVarint(out, id);
+        } else {
+            id = FIRST_STRING_ID + strings.size();
+            strings.put(value, id);
+            writeVarint(out, id);
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in, List<String> strings, int id) throws IOException {
+        int index = id - FIRST_STRING_ID;
+        if (index == strings.size()) {
+            strings.add(in.readUTF());
+        } else if (index < 0 || index > strings.size()) {
+            throw new IOException("Corrupt GL trace: string id " + id);
+        }
+        return strings.get(index);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xffffffffL);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt GL trace: varint too long");
+    }
+}
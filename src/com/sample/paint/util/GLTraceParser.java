@@ -0,0 +1,82 @@
+package com.sample.paint.util;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import com.jogamp.opengl.GL2;
+import com.jogamp.opengl.TraceGL2;
+
+/**
+ * Turns the output of JOGL's TraceGL2 pipeline back into calls.
+ *
+ * TraceGL2 forwards every call to the wrapped GL and prints it as one line,
+ * e.g. "glVertex2f(<float> 0.5, <float> 1.0)", indented inside glBegin/glEnd
+ * and followed by " = value" for calls that return one. This stream collects
+ * the lines and hands each call's name and argument text to the subclass.
+ * TraceGL2 requires the desktop GL4bc implementation underneath; formatting the
+ * trace costs far more than the calls, so wrap the GL only while the calls are
+ * being looked at.
+ */
+public abstract class GLTraceParser extends OutputStream {
+    private final GL2 gl;
+    private final StringBuilder line = new StringBuilder();
+
+    protected GLTraceParser(GL2 delegate) {
+        this.gl = new TraceGL2(delegate, new PrintStream(this, false));
+    }
+
+    /**
+     * The GL2 to draw with; its calls reach the delegate and this parser
+     */
+    public GL2 getGL() {
+        return gl;
+    }
+
+    /**
+     * @param name the GL function, e.g. "glDrawArrays"
+     * @param arguments the text between the parentheses, e.g. "<int> 0x1, <int> 0x0, <int> 0x4"
+     */
+    protected abstract void call(String name, String arguments);
+
+    @Override
+    public void write(int b) {
+        if (b == '\n') {
+            endLine();
+        } else if (b != '\r') {
+            line.append((char) b);
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            write(bytes[i]);
+        }
+    }
+
+    private void endLine() {
+        // Leading spaces are the trace's indentation inside glBegin/glEnd
+        int start = 0;
+        while (start < line.length() && line.charAt(start) == ' ') {
+            start++;
+        }
+        int open = line.indexOf("(", start);
+        // Argument values contain no parentheses, unlike some return values
+        int close = line.indexOf(")", open);
+        if (open > start + 2 && close > open && line.charAt(start) == 'g' && line.charAt(start + 1) == 'l') {
+            call(line.substring(start, open), line.substring(open + 1, close));
+        }
+        line.setLength(0);
+    }
+
+    /**
+     * Split argument text into its arguments, each "<type> value" or just "<type>"
+     * for arrays, which the trace does not print
+     */
+    protected static String[] splitArguments(String arguments) {
+        if (arguments.isEmpty()) {
+            return new String[0];
+        }
+        // Each argument starts with its type in angle brackets; values contain no ", <"
+        return arguments.split(", (?=<)");
+    }
+}
@@ -0,0 +1,46 @@
+package com.sample.paint.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import com.jogamp.opengl.GL2;
+
+/**
+ * Records the OpenGL calls made through the GL2 from getGL(), with their
+ * arguments, into a GLTrace that can be saved and replayed or compared later.
+ *
+ * The calls are read off JOGL's trace pipeline, see GLTraceParser; wrap the GL
+ * only for the frames being captured.
+ */
+public class GLTraceRecorder extends GLTraceParser {
+    private final GLTrace trace = new GLTrace();
+    private List<GLTrace.Call> frame = new ArrayList<>();
+
+    public GLTraceRecorder(GL2 delegate) {
+        super(delegate);
+    }
+
+    @Override
+    protected void call(String name, String arguments) {
+        String[] texts = splitArguments(arguments);
+        Object[] args = new Object[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            args[i] = GLTrace.parseArgument(texts[i]);
+        }
+        frame.add(new GLTrace.Call(name, args));
+    }
+
+    /**
+     * Close the frame being recorded; later calls start a new one
+     */
+    public void endFrame() {
+        trace.addFrame(frame);
+        frame = new ArrayList<>();
+    }
+
+    /**
+     * The frames recorded so far
+     */
+    public GLTrace getTrace() {
+        return trace;
+    }
+}
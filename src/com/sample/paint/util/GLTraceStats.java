@@ -0,0 +1,268 @@
+package com.sample.paint.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * What a GLTrace submits: calls per function, draw calls, vertices,
+ * glBegin/glEnd pairs and state changes, including redundant ones that set a
+ * state to the value it already has.
+ *
+ * State is tracked from the start of the trace, so the first setting of each
+ * state is never redundant. Calls that may change state behind the tracker's
+ * back, such as glCallList and glPopAttrib, make it forget what it knew.
+ */
+public class GLTraceStats {
+    private static final int GL_COLOR_ARRAY = 0x8076;
+
+    // Per function: {calls, redundant state changes}
+    private final Map<String, long[]> functions = new TreeMap<>();
+    private int frames;
+    private long calls;
+    private long drawCalls;
+    private long immediateVertices;
+    private long arrayVertices;
+    private long beginEndPairs;
+    private long unmatchedBeginEnd;
+    private long stateChanges;
+    private long redundantChanges;
+
+    public static GLTraceStats of(GLTrace trace) {
+        GLTraceStats stats = new GLTraceStats();
+        Map<String, GLTrace.Call> state = new HashMap<>();
+        boolean insideBegin = false;
+        for (List<GLTrace.Call> frame : trace.getFrames()) {
+            stats.frames++;
+            for (GLTrace.Call call : frame) {
+                String name = call.getName();
+                long[] counts = stats.functions.computeIfAbsent(name, key -> new long[2]);
+                counts[0]++;
+                stats.calls++;
+
+                if (isDrawCall(name)) {
+                    stats.drawCalls++;
+                }
+                if (name.equals("glBegin")) {
+                    stats.unmatchedBeginEnd += insideBegin ? 1 : 0;
+                    insideBegin = true;
+                } else if (name.equals("glEnd")) {
+                    if (insideBegin) {
+                        stats.beginEndPairs++;
+                    } else {
+                        stats.unmatchedBeginEnd++;
+                    }
+                    insideBegin = false;
+                } else if (isVertex(name)) {
+                    stats.immediateVertices++;
+                } else if (name.startsWith("glRect")) {
+                    stats.immediateVertices += 4;
+                } else if (name.equals("glDrawArrays")) {
+                    stats.arrayVertices += call.intArg(2);
+                } else if (name.equals("glDrawElements")) {
+                    stats.arrayVertices += call.intArg(1);
+                }
+
+                String key = stateKey(call);
+                if (key != null) {
+                    stats.stateChanges++;
+                    GLTrace.Call previous = state.put(key, call);
+                    if (previous != null && previous.sameAs(call)) {
+                        stats.redundantChanges++;
+                        counts[1]++;
+                    } else if (name.equals("glBindTexture")) {
+                        // Texture parameters belong to the texture bound
+                        state.keySet().removeIf(other -> other.startsWith("glTexParameter"));
+                    }
+                } else if (name.startsWith("glCallList") || (name.startsWith("glPop") && name.endsWith("Attrib"))) {
+                    state.clear();
+                } else if (isDrawCall(name) && isEnabled(state, "glEnableClientState " + GL_COLOR_ARRAY)) {
+                    // Drawing with a color array leaves the current color undefined
+                    state.remove("color");
+                }
+            }
+        }
+        if (insideBegin) {
+            stats.unmatchedBeginEnd++;
+        }
+        return stats;
+    }
+
+    /**
+     * @return the state a call sets, or null if it sets none that is tracked;
+     *         calls with the same key set the same state, calls that also have
+     *         the same name and arguments set it to the same value
+     */
+    private static String stateKey(GLTrace.Call call) {
+        String name = call.getName();
+        switch (name) {
+            case "glEnable":
+            case "glDisable":
+                return "glEnable " + call.intArg(0);
+            case "glEnableClientState":
+            case "glDisableClientState":
+                return "glEnableClientState " + call.intArg(0);
+            case "glBindTexture":
+            case "glBindFramebuffer":
+            case "glBindBuffer":
+            case "glPixelStorei":
+                return name + " " + call.intArg(0);
+            case "glTexParameteri":
+            case "glTexParameterf":
+            case "glTexEnvi":
+            case "glTexEnvf":
+                return name + " " + call.intArg(0) + " " + call.intArg(1);
+            case "glPointSize":
+            case "glLineWidth":
+            case "glMatrixMode":
+            case "glBlendFunc":
+            case "glClearColor":
+            case "glViewport":
+            case "glShadeModel":
+            case "glActiveTexture":
+            case "glUseProgram":
+                return name;
+            default:
+                // glColor3f, glColor4ub, ... but not glColorPointer or glColorMask
+                return name.startsWith("glColor") && name.length() > 7 && Character.isDigit(name.charAt(7)) ? "color" : null;
+        }
+    }
+
+    /**
+     * @return true for the calls that submit geometry: glDraw*, glMultiDraw*, glBegin, glRect*, glCallList*
+     */
+    public static boolean isDrawCall(String name) {
+        return name.startsWith("glDraw") || name.startsWith("glMultiDraw")
+                || name.startsWith("glCallList") || name.startsWith("glRect") || name.equals("glBegin");
+    }
+
+    private static boolean isEnabled(Map<String, GLTrace.Call> state, String key) {
+        GLTrace.Call call = state.get(key);
+        return call != null && call.getName().startsWith("glEnable");
+    }
+
+    private static boolean isVertex(String name) {
+        return name.startsWith("glVertex") && name.length() > 8 && Character.isDigit(name.charAt(8));
+    }
+
+    public int getFrames() {
+        return frames;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getDrawCalls() {
+        return drawCalls;
+    }
+
+    public long getVertices() {
+        return immediateVertices + arrayVertices;
+    }
+
+    public long getBeginEndPairs() {
+        return beginEndPairs;
+    }
+
+    public long getStateChanges() {
+        return stateChanges;
+    }
+
+    public long getRedundantChanges() {
+        return redundantChanges;
+    }
+
+    /**
+     * Multi-line report: totals, then every function called with its call count
+     * and redundant state changes
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Trace: %d frames, %d calls, %d draw calls%n", frames, calls, drawCalls));
+        summary.append(String.format("Vertices: %d (%d immediate in %d glBegin/glEnd pairs, %d from arrays)%s%n",
+                getVertices(), immediateVertices, beginEndPairs, arrayVertices,
+                unmatchedBeginEnd > 0 ? ", " + unmatchedBeginEnd + " unmatched glBegin/glEnd" : ""));
+        summary.append(String.format("State changes: %d, redundant %d (%.1f%%)%n", stateChanges, redundantChanges,
+                stateChanges == 0 ? 0.0 : 100.0 * redundantChanges / stateChanges));
+        summary.append(String.format("  %-28s %10s %10s%n", "Function", "calls", "redundant"));
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(functions.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        for (Map.Entry<String, long[]> entry : entries) {
+            long redundant = entry.getValue()[1];
+            summary.append(String.format("  %-28s %10d %10s%n", entry.getKey(), entry.getValue()[0],
+                    redundant > 0 ? Long.toString(redundant) : ""));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Multi-line comparison of two traces: the totals per frame, then every
+     * function whose call count per frame changed
+     */
+    public static String compare(GLTraceStats baseline, GLTraceStats current) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-30s %12s %12s %10s%n", "Per frame", "baseline", "current", "change"));
+        appendRow(report, "calls", baseline.perFrame(baseline.calls), current.perFrame(current.calls));
+        appendRow(report, "draw calls", baseline.perFrame(baseline.drawCalls), current.perFrame(current.drawCalls));
+        appendRow(report, "vertices", baseline.perFrame(baseline.getVertices()), current.perFrame(current.getVertices()));
+        appendRow(report, "glBegin/glEnd pairs", baseline.perFrame(baseline.beginEndPairs), current.perFrame(current.beginEndPairs));
+        appendRow(report, "state changes", baseline.perFrame(baseline.stateChanges), current.perFrame(current.stateChanges));
+        appendRow(report, "redundant state changes", baseline.perFrame(baseline.redundantChanges), current.perFrame(current.redundantChanges));
+
+        TreeSet<String> names = new TreeSet<>(baseline.functions.keySet());
+        names.addAll(current.functions.keySet());
+        for (Iterator<String> i = names.iterator(); i.hasNext();) {
+            String name = i.next();
+            if (baseline.perFrame(baseline.count(name)) == current.perFrame(current.count(name))) {
+                i.remove();
+            }
+        }
+        if (!names.isEmpty()) {
+            report.append("Changed functions:").append(System.lineSeparator());
+            for (String name : names) {
+                appendRow(report, "  " + name, baseline.perFrame(baseline.count(name)), current.perFrame(current.count(name)));
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * @param tolerance allowed growth, e.g. 0.1 for 10%
+     * @return a line for each of calls, draw calls and redundant state changes
+     *         per frame that grew by more than the tolerance; empty if none did
+     */
+    public static List<String> regressions(GLTraceStats baseline, GLTraceStats current, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        checkGrowth(regressions, "calls", baseline.perFrame(baseline.calls), current.perFrame(current.calls), tolerance);
+        checkGrowth(regressions, "draw calls", baseline.perFrame(baseline.drawCalls), current.perFrame(current.drawCalls), tolerance);
+        checkGrowth(regressions, "redundant state changes", baseline.perFrame(baseline.redundantChanges),
+                current.perFrame(current.redundantChanges), tolerance);
+        return regressions;
+    }
+
+    private static void checkGrowth(List<String> regressions, String label, double baseline, double current, double tolerance) {
+        if (current > baseline * (1 + tolerance) && current > baseline) {
+            regressions.add(String.format("%s per frame grew from %.1f to %.1f", label, baseline, current));
+        }
+    }
+
+    private static void appendRow(StringBuilder report, String label, double baseline, double current) {
+        String change = baseline == 0 ? (current == 0 ? "" : "new")
+                : String.format("%+.1f%%", 100 * (current - baseline) / baseline);
+        report.append(String.format("%-30s %12.1f %12.1f %10s%n", label, baseline, current, change));
+    }
+
+    private long count(String name) {
+        long[] counts = functions.get(name);
+        return counts == null ? 0 : counts[0];
+    }
+
+    private double perFrame(long total) {
+        return frames == 0 ? 0 : (double) total / frames;
+    }
+}
@@ -0,0 +1,91 @@
+package com.sample.paint.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded queue of pointer samples between the event thread and the renderer.
+ *
+ * Samples are stored as primitives in preallocated arrays: interleaved x, y
+ * floats and a timestamp each. The producer never blocks or takes a lock; it
+ * publishes a sample with a release store of the tail. Consumers take everything
+ * queued so far in one batch and hand it to a sink in at most two contiguous
+ * runs, without copying. Only one thread may offer; any thread may drain, one at
+ * a time.
+ */
+public class InputRingBuffer {
+    /**
+     * Receives a run of samples; the arrays are only valid during the call
+     */
+    public interface SampleSink {
+        /**
+         * @param coords interleaved x, y floats; the run starts at coords[from * 2]
+         * @param times System.nanoTime() of each sample; the run starts at times[from]
+         */
+        void samples(float[] coords, long[] times, int from, int count);
+    }
+
+    private final float[] coords;
+    private final long[] times;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next sample to drain, written by consumers
+    private final AtomicLong tail = new AtomicLong(); // next free slot, written by the producer
+
+    /**
+     * @param capacity maximum queued samples, rounded up to a power of two
+     */
+    public InputRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        coords = new float[size * 2];
+        times = new long[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Queue a sample; producer thread only
+     * @return false if the buffer is full and the sample was not queued
+     */
+    public boolean offer(float x, float y, long timeNanos) {
+        long t = tail.get();
+        if (t - head.getAcquire() > mask) {
+            return false;
+        }
+        int slot = (int) t & mask;
+        coords[slot * 2] = x;
+        coords[slot * 2 + 1] = y;
+        times[slot] = timeNanos;
+        tail.setRelease(t + 1);
+        return true;
+    }
+
+    /**
+     * Hand every queued sample to the sink, oldest first, and free their slots
+     * @return the number of samples drained
+     */
+    public synchronized int drain(SampleSink sink) {
+        long h = head.get();
+        long t = tail.getAcquire();
+        int count = (int) (t - h);
+        if (count == 0) {
+            return 0;
+        }
+        int slot = (int) h & mask;
+        int firstRun = Math.min(count, mask + 1 - slot);
+        sink.samples(coords, times, slot, firstRun);
+        if (firstRun < count) {
+            sink.samples(coords, times, 0, count - firstRun);
+        }
+        head.setRelease(t);
+        return count;
+    }
+
+    /**
+     * Drop every queued sample
+     */
+    public synchronized void clear() {
+        head.setRelease(tail.getAcquire());
+    }
+
+    public boolean isEmpty() {
+        return head.getAcquire() == tail.getAcquire();
+    }
+}
@@ -0,0 +1,144 @@
+package com.sample.paint.util;
+
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+
+/**
+ * A texture-backed framebuffer object holding a retained rendering, such as the
+ * committed shapes of the scene. The contents stay valid until invalidate() is
+ * called or the canvas size changes, so a frame only has to draw the texture.
+ */
+public class OffscreenLayer {
+    private int framebuffer;
+    private int texture;
+    private int width;
+    private int height;
+    private volatile boolean valid;
+    private boolean unsupported;
+
+    /**
+     * @return true if the layer holds a rendering for a canvas of the given size
+     */
+    public boolean isValid(int width, int height) {
+        return valid && this.width == width && this.height == height;
+    }
+
+    /**
+     * Discard the retained rendering; it is rebuilt on the next frame.
+     * Safe to call from any thread.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Redirect drawing into the layer, (re)allocating storage for the given size
+     * @return false if framebuffer objects are unavailable; the caller should draw directly
+     */
+    public boolean begin(GL2 gl, int width, int height) {
+        if (unsupported) {
+            return false;
+        }
+        valid = false;
+
+        if (framebuffer == 0) {
+            int[] ids = new int[1];
+            gl.glGenFramebuffers(1, ids, 0);
+            framebuffer = ids[0];
+            gl.glGenTextures(1, ids, 0);
+            texture = ids[0];
+            this.width = 0;
+        }
+
+        if (this.width != width || this.height != height) {
+            gl.glBindTexture(GL.GL_TEXTURE_2D, texture);
+            gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_NEAREST);
+            gl.glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MAG_FILTER, GL.GL_NEAREST);
+            gl.glTexImage2D(GL.GL_TEXTURE_2D, 0, GL.GL_RGBA8, width, height, 0,
+                    GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, null);
+            gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+            this.width = width;
+            this.height = height;
+        }
+
+        gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, framebuffer);
+        gl.glFramebufferTexture2D(GL.GL_FRAMEBUFFER, GL.GL_COLOR_ATTACHMENT0, GL.GL_TEXTURE_2D, texture, 0);
+        if (gl.glCheckFramebufferStatus(GL.GL_FRAMEBUFFER) != GL.GL_FRAMEBUFFER_COMPLETE) {
+            gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, 0);
+            dispose(gl);
+            unsupported = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finish drawing into the layer and switch back to the drawable's framebuffer
+     */
+    public void end(GL2 gl, int defaultFramebuffer) {
+        gl.glBindFramebuffer(GL.GL_FRAMEBUFFER, defaultFramebuffer);
+        valid = true;
+    }
+
+    /**
+     * Draw the retained rendering over the whole viewport
+     */
+    public void draw(GL2 gl) {
+        draw(gl, false);
+    }
+
+    /**
+     * Draw the retained rendering over the whole viewport
+     * @param blend true to alpha-blend a transparent layer over what is already drawn
+     */
+    public void draw(GL2 gl, boolean blend) {
+        gl.glMatrixMode(GL2.GL_PROJECTION);
+        gl.glPushMatrix();
+        gl.glLoadIdentity();
+        gl.glMatrixMode(GL2.GL_MODELVIEW);
+        gl.glPushMatrix();
+        gl.glLoadIdentity();
+
+        gl.glEnable(GL.GL_TEXTURE_2D);
+        gl.glBindTexture(GL.GL_TEXTURE_2D, texture);
+        gl.glTexEnvi(GL2.GL_TEXTURE_ENV, GL2.GL_TEXTURE_ENV_MODE, GL2.GL_REPLACE);
+        if (blend) {
+            gl.glEnable(GL.GL_BLEND);
+            gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
+        }
+
+        gl.glBegin(GL2.GL_QUADS);
+        gl.glTexCoord2f(0, 0); gl.glVertex2f(-1, -1);
+        gl.glTexCoord2f(1, 0); gl.glVertex2f(1, -1);
+        gl.glTexCoord2f(1, 1); gl.glVertex2f(1, 1);
+        gl.glTexCoord2f(0, 1); gl.glVertex2f(-1, 1);
+        gl.glEnd();
+        GLRenderer.countDraws(1, 4);
+
+        if (blend) {
+            gl.glDisable(GL.GL_BLEND);
+        }
+        gl.glBindTexture(GL.GL_TEXTURE_2D, 0);
+        gl.glDisable(GL.GL_TEXTURE_2D);
+
+        gl.glPopMatrix();
+        gl.glMatrixMode(GL2.GL_PROJECTION);
+        gl.glPopMatrix();
+        gl.glMatrixMode(GL2.GL_MODELVIEW);
+    }
+
+    /**
+     * Release the GL objects owned by this layer
+     */
+    public void dispose(GL2 gl) {
+        if (framebuffer != 0) {
+            gl.glDeleteFramebuffers(1, new int[] { framebuffer }, 0);
+            gl.glDeleteTextures(1, new int[] { texture }, 0);
+            framebuffer = 0;
+            texture = 0;
+        }
+        width = 0;
+        height = 0;
+        valid = false;
+    }
+}
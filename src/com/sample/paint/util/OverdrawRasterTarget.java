@@ -0,0 +1,91 @@
+package com.sample.paint.util;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+/**
+ * Software raster target that counts how often each pixel is written instead of
+ * storing colors. Uses the same coverage rules as SoftwareRasterTarget, which
+ * mirror the GL path, so the counts match what the canvas actually paints.
+ */
+public class OverdrawRasterTarget extends SoftwareRasterTarget {
+
+    public OverdrawRasterTarget(int width, int height) {
+        super(width, height);
+    }
+
+    @Override
+    protected void fill(int x0, int y0, int x1, int y1, Color color) {
+        int[] counts = getPixels();
+        int width = getWidth();
+        for (int row = y0; row <= y1; row++) {
+            int offset = row * width;
+            for (int x = x0; x <= x1; x++) {
+                counts[offset + x]++;
+            }
+        }
+    }
+
+    /**
+     * @return writes to the most overdrawn pixel
+     */
+    public int getMaxWrites() {
+        int max = 0;
+        for (int count : getPixels()) {
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    /**
+     * @return total pixel writes
+     */
+    public long getTotalWrites() {
+        long total = 0;
+        for (int count : getPixels()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return number of pixels written at least once
+     */
+    public int getCoveredPixels() {
+        int covered = 0;
+        for (int count : getPixels()) {
+            if (count > 0) {
+                covered++;
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * Render the write counts as a heatmap: untouched pixels are black, single
+     * writes blue, and the most overdrawn pixels red. The ramp is logarithmic so
+     * a few hot spots do not wash out the rest of the image.
+     */
+    public BufferedImage toHeatmap() {
+        int[] counts = getPixels();
+        int width = getWidth();
+        int height = getHeight();
+        double logMax = Math.log(Math.max(getMaxWrites(), 2));
+
+        int[] argb = new int[width * height];
+        for (int i = 0; i < argb.length; i++) {
+            int count = counts[i];
+            if (count == 0) {
+                argb[i] = 0xff000000;
+            } else {
+                float heat = (float) (Math.log(count) / logMax);
+                // Hue runs from blue (2/3) down to red (0)
+                argb[i] = Color.HSBtoRGB((1 - Math.min(heat, 1)) * 2 / 3f, 1, 1);
+            }
+        }
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.getRaster().setDataElements(0, 0, width, height, argb);
+        return image;
+    }
+}
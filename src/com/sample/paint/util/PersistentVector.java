@@ -0,0 +1,435 @@
+package com.sample.paint.util;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Immutable list backed by a balanced (AVL) tree indexed by position.
+ *
+ * Every update returns a new vector that shares all untouched subtrees with the
+ * old one, so appending, replacing or removing an element copies only the
+ * O(log n) nodes on the path to it. Old versions stay valid and unchanged, which
+ * makes them safe to keep for undo or to hand to another thread for rendering
+ * or saving. Two versions are compared by visiting only the nodes they do not share.
+ */
+public final class PersistentVector<E> extends AbstractList<E> {
+    /** Approximate heap size of one tree node, for memory accounting */
+    public static final int NODE_BYTES = 40;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(null);
+
+    private static final class Node<E> {
+        final E value;
+        final Node<E> left;
+        final Node<E> right;
+        final int size;
+        final int height;
+
+        Node(E value, Node<E> left, Node<E> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+
+    /**
+     * The elements removed from one version and inserted into another, each with its
+     * position in the version it belongs to, in ascending order
+     */
+    public static final class Difference<E> {
+        private final int[] removedIndices;
+        private final List<E> removed;
+        private final int[] insertedIndices;
+        private final List<E> inserted;
+
+        Difference(int[] removedIndices, List<E> removed, int[] insertedIndices, List<E> inserted) {
+            this.removedIndices = removedIndices;
+            this.removed = removed;
+            this.insertedIndices = insertedIndices;
+            this.inserted = inserted;
+        }
+
+        /**
+         * @return positions of the removed elements in the older version
+         */
+        public int[] getRemovedIndices() {
+            return removedIndices;
+        }
+
+        public List<E> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return positions of the inserted elements in the newer version
+         */
+        public int[] getInsertedIndices() {
+            return insertedIndices;
+        }
+
+        public List<E> getInserted() {
+            return inserted;
+        }
+
+        public boolean isEmpty() {
+            return removed.isEmpty() && inserted.isEmpty();
+        }
+    }
+
+    /**
+     * A node reached while comparing two trees, with the position of its leftmost element
+     */
+    private static final class Visit<E> {
+        final Node<E> node;
+        final int offset;
+
+        Visit(Node<E> node, int offset) {
+            this.node = node;
+            this.offset = offset;
+        }
+    }
+
+    private final Node<E> root;
+
+    private PersistentVector(Node<E> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Build a perfectly balanced vector holding the elements in iteration order, in O(n)
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> of(Collection<? extends E> elements) {
+        if (elements instanceof PersistentVector) {
+            return (PersistentVector<E>) elements;
+        }
+        Object[] values = elements.toArray();
+        return values.length == 0 ? empty() : new PersistentVector<>(build((E[]) values, 0, values.length));
+    }
+
+    @Override
+    public E get(int index) {
+        checkIndex(index, size());
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Height of the tree, i.e. the number of nodes an update copies at most
+     */
+    public int depth() {
+        return height(root);
+    }
+
+    /**
+     * @return a vector with the element appended
+     */
+    public PersistentVector<E> plus(E element) {
+        return new PersistentVector<>(insert(root, size(), element));
+    }
+
+    /**
+     * @return a vector with the element at index replaced
+     */
+    public PersistentVector<E> with(int index, E element) {
+        checkIndex(index, size());
+        return new PersistentVector<>(replace(root, index, element));
+    }
+
+    /**
+     * @return a vector without the element at index
+     */
+    public PersistentVector<E> minus(int index) {
+        checkIndex(index, size());
+        return new PersistentVector<>(delete(root, index));
+    }
+
+    /**
+     * Find the elements removed and inserted between two versions derived from one
+     * another. Subtrees both versions share are skipped whole, so k changed elements
+     * cost O(k log n). Elements are compared by identity; each must occur at most once,
+     * and the elements both versions keep must be in the same order in both, as they
+     * are when versions differ by appends, replacements and removals.
+     * @param maxNodes give up once more than this many unshared nodes have been visited
+     * @return the difference, or null if finding it would visit more than maxNodes nodes
+     */
+    public static <E> Difference<E> difference(PersistentVector<E> before, PersistentVector<E> after, int maxNodes) {
+        // A node shared by both trees has the same height in each, and every ancestor
+        // above it that is not shared as well is visited; so walking both trees a
+        // height at a time meets each shared node in both at once, before entering it
+        int top = Math.max(before.depth(), after.depth());
+        List<List<Visit<E>>> levelsBefore = levels(top), levelsAfter = levels(top);
+        if (before.root != null) {
+            levelsBefore.get(before.root.height).add(new Visit<>(before.root, 0));
+        }
+        if (after.root != null) {
+            levelsAfter.get(after.root.height).add(new Visit<>(after.root, 0));
+        }
+
+        List<Visit<E>> onlyBefore = new ArrayList<>(), onlyAfter = new ArrayList<>();
+        for (int height = top; height > 0; height--) {
+            List<Visit<E>> levelBefore = levelsBefore.get(height), levelAfter = levelsAfter.get(height);
+            Set<Node<E>> nodesBefore = identitySet(), nodesAfter = identitySet();
+            for (Visit<E> visit : levelBefore) {
+                nodesBefore.add(visit.node);
+            }
+            for (Visit<E> visit : levelAfter) {
+                nodesAfter.add(visit.node);
+            }
+            expandUnshared(levelBefore, nodesAfter, levelsBefore, onlyBefore);
+            expandUnshared(levelAfter, nodesBefore, levelsAfter, onlyAfter);
+            if (onlyBefore.size() + onlyAfter.size() > maxNodes) {
+                return null;
+            }
+        }
+
+        // An unshared node may still hold an element both versions keep, copied along a path
+        Set<E> valuesBefore = identitySet(), valuesAfter = identitySet();
+        for (Visit<E> visit : onlyBefore) {
+            valuesBefore.add(visit.node.value);
+        }
+        for (Visit<E> visit : onlyAfter) {
+            valuesAfter.add(visit.node.value);
+        }
+        List<Visit<E>> removed = withoutValues(onlyBefore, valuesAfter);
+        List<Visit<E>> inserted = withoutValues(onlyAfter, valuesBefore);
+        return new Difference<>(indices(removed), values(removed), indices(inserted), values(inserted));
+    }
+
+    private static <E> List<List<Visit<E>>> levels(int top) {
+        List<List<Visit<E>>> levels = new ArrayList<>(top + 1);
+        for (int height = 0; height <= top; height++) {
+            levels.add(new ArrayList<>());
+        }
+        return levels;
+    }
+
+    /**
+     * Queue the children of every visited node the other tree does not share at this height
+     */
+    private static <E> void expandUnshared(List<Visit<E>> level, Set<Node<E>> shared,
+            List<List<Visit<E>>> levels, List<Visit<E>> unshared) {
+        for (Visit<E> visit : level) {
+            Node<E> node = visit.node;
+            if (shared.contains(node)) {
+                continue;
+            }
+            unshared.add(visit);
+            if (node.left != null) {
+                levels.get(node.left.height).add(new Visit<>(node.left, visit.offset));
+            }
+            if (node.right != null) {
+                levels.get(node.right.height).add(new Visit<>(node.right, visit.offset + size(node.left) + 1));
+            }
+        }
+    }
+
+    private static <E> List<Visit<E>> withoutValues(List<Visit<E>> visits, Set<E> values) {
+        List<Visit<E>> result = new ArrayList<>();
+        for (Visit<E> visit : visits) {
+            if (!values.contains(visit.node.value)) {
+                result.add(visit);
+            }
+        }
+        result.sort((a, b) -> Integer.compare(index(a), index(b)));
+        return result;
+    }
+
+    private static <E> int[] indices(List<Visit<E>> visits) {
+        int[] indices = new int[visits.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = index(visits.get(i));
+        }
+        return indices;
+    }
+
+    private static <E> List<E> values(List<Visit<E>> visits) {
+        List<E> values = new ArrayList<>(visits.size());
+        for (Visit<E> visit : visits) {
+            values.add(visit.node.value);
+        }
+        return values;
+    }
+
+    /**
+     * @return the position of the visited node's own element
+     */
+    private static int index(Visit<?> visit) {
+        return visit.offset + size(visit.node.left);
+    }
+
+    private static <T> Set<T> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new InOrderIterator<>(root);
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        forEach(root, action);
+    }
+
+    private static <E> void forEach(Node<E> node, Consumer<? super E> action) {
+        while (node != null) {
+            forEach(node.left, action);
+            action.accept(node.value);
+            node = node.right;
+        }
+    }
+
+    private static <E> Node<E> build(E[] values, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Node<>(values[middle], build(values, from, middle), build(values, middle + 1, to));
+    }
+
+    private static <E> Node<E> insert(Node<E> node, int index, E element) {
+        if (node == null) {
+            return new Node<>(element, null, null);
+        }
+        int leftSize = size(node.left);
+        if (index <= leftSize) {
+            return balance(node.value, insert(node.left, index, element), node.right);
+        }
+        return balance(node.value, node.left, insert(node.right, index - leftSize - 1, element));
+    }
+
+    private static <E> Node<E> replace(Node<E> node, int index, E element) {
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+            return new Node<>(node.value, replace(node.left, index, element), node.right);
+        } else if (index > leftSize) {
+            return new Node<>(node.value, node.left, replace(node.right, index - leftSize - 1, element));
+        }
+        return new Node<>(element, node.left, node.right);
+    }
+
+    private static <E> Node<E> delete(Node<E> node, int index) {
+        int leftSize = size(node.left);
+        if (index < leftSize) {
+            return balance(node.value, delete(node.left, index), node.right);
+        } else if (index > leftSize) {
+            return balance(node.value, node.left, delete(node.right, index - leftSize - 1));
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        // Replace the removed element with its in-order successor
+        Node<E> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.value, node.left, delete(node.right, 0));
+    }
+
+    /**
+     * Create a node, rotating once or twice if the subtree heights differ by two
+     */
+    private static <E> Node<E> balance(E value, Node<E> left, Node<E> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.value, left.left, new Node<>(value, left.right, right));
+            }
+            Node<E> pivot = left.right;
+            return new Node<>(pivot.value, new Node<>(left.value, left.left, pivot.left),
+                    new Node<>(value, pivot.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.value, new Node<>(value, left, right.left), right.right);
+            }
+            Node<E> pivot = right.left;
+            return new Node<>(pivot.value, new Node<>(value, left, pivot.left),
+                    new Node<>(right.value, pivot.right, right.right));
+        }
+        return new Node<>(value, left, right);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    /**
+     * In-order traversal with an explicit stack of the pending left spine
+     */
+    private static final class InOrderIterator<E> implements Iterator<E> {
+        private final Deque<Node<E>> stack = new ArrayDeque<>();
+
+        InOrderIterator(Node<E> root) {
+            pushLeft(root);
+        }
+
+        private void pushLeft(Node<E> node) {
+            for (; node != null; node = node.left) {
+                stack.push(node);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<E> node = stack.pop();
+            pushLeft(node.right);
+            return node.value;
+        }
+    }
+}
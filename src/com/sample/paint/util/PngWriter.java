@@ -0,0 +1,371 @@
+package com.sample.paint.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streaming PNG encoder for opaque 8-bit RGB images. Every band of rows passed
+ * to writeRows is filtered and compressed as an independent raw deflate segment
+ * on an executor, ending in a sync flush so the segments concatenate into one
+ * valid zlib stream. The per-band Adler-32 checksums are combined in order, and
+ * only a bounded number of bands is held in memory at a time.
+ */
+public class PngWriter implements Closeable {
+    private static final byte[] SIGNATURE = { (byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n' };
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int BYTES_PER_PIXEL = 3;
+    private static final int IDAT_SIZE = 1 << 16;
+    private static final int ADLER_BASE = 65521;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final int compressionLevel;
+    private final ExecutorService executor;
+    private final int maxPendingBands;
+    private final ChunkOutputStream idat;
+
+    // Compressed bands in row order, written out as they complete
+    private final ArrayDeque<Future<Band>> pending = new ArrayDeque<>();
+    private int[] previousRow; // last pixel row of the previous band, for the Up/Average/Paeth filters
+    private int rowsWritten;
+    private long adler = 1;
+
+    /**
+     * Write the PNG header; the caller then supplies exactly height rows
+     * @param compressionLevel Deflater level, 0 (none) to 9 (smallest)
+     */
+    public PngWriter(OutputStream out, int width, int height, int compressionLevel) throws IOException {
+        this(out, width, height, compressionLevel, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor runs the filtering and compression of each band
+     */
+    public PngWriter(OutputStream out, int width, int height, int compressionLevel,
+            ExecutorService executor) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        this.compressionLevel = compressionLevel;
+        this.executor = executor;
+        this.maxPendingBands = 2 * Runtime.getRuntime().availableProcessors();
+        this.idat = new ChunkOutputStream("IDAT");
+
+        this.out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 8; // bits per channel
+        header[9] = COLOR_TYPE_RGB;
+        writeChunk("IHDR", header, header.length);
+
+        // zlib header: deflate with a 32K window, FLEVEL hint, check bits
+        int cmf = 0x78;
+        int flg = zlibLevelHint(compressionLevel) << 6;
+        flg += 31 - (cmf * 256 + flg) % 31;
+        idat.write(cmf);
+        idat.write(flg);
+    }
+
+    /**
+     * Queue rows of ARGB pixels as one band; alpha is dropped. The pixels are copied,
+     * so the caller may reuse the array as soon as this returns.
+     * @param argb pixels, row-major with stride width
+     * @param offset index of the first pixel of the first row
+     */
+    public void writeRows(int[] argb, int offset, int rows) throws IOException {
+        if (rows <= 0) {
+            return;
+        }
+        if (rowsWritten + rows > height) {
+            throw new IOException("Too many rows: " + (rowsWritten + rows) + " > " + height);
+        }
+        int[] pixels = new int[rows * width];
+        System.arraycopy(argb, offset, pixels, 0, pixels.length);
+        int[] above = previousRow;
+        previousRow = new int[width];
+        System.arraycopy(pixels, (rows - 1) * width, previousRow, 0, width);
+        rowsWritten += rows;
+
+        boolean last = rowsWritten == height;
+        pending.add(executor.submit(() -> compressBand(pixels, rows, above, last)));
+        while (pending.size() > maxPendingBands) {
+            writeBand(pending.poll());
+        }
+    }
+
+    /**
+     * Write the remaining bands, the checksum and the end of the image; does not
+     * close the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (rowsWritten != height) {
+                throw new IOException("Incomplete image: " + rowsWritten + " of " + height + " rows written");
+            }
+            while (!pending.isEmpty()) {
+                writeBand(pending.poll());
+            }
+            idat.write((int) (adler >>> 24));
+            idat.write((int) (adler >>> 16));
+            idat.write((int) (adler >>> 8));
+            idat.write((int) adler);
+            idat.close();
+            writeChunk("IEND", new byte[0], 0);
+            out.flush();
+        } finally {
+            for (Future<Band> band : pending) {
+                band.cancel(true);
+            }
+            pending.clear();
+        }
+    }
+
+    private void writeBand(Future<Band> future) throws IOException {
+        Band band;
+        try {
+            band = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Compression failed", e.getCause());
+        }
+        idat.write(band.data, 0, band.data.length);
+        adler = combineAdler(adler, band.adler, band.length);
+    }
+
+    /**
+     * Filter and deflate one band as a raw segment that ends on a byte boundary,
+     * or with the final block if it is the last band of the image
+     */
+    private Band compressBand(int[] pixels, int rows, int[] above, boolean last) {
+        int rowBytes = width * BYTES_PER_PIXEL;
+        byte[] filtered = new byte[rows * (1 + rowBytes)];
+        byte[] previous = new byte[rowBytes];
+        byte[] current = new byte[rowBytes];
+        byte[][] candidates = new byte[5][rowBytes];
+        if (above != null) {
+            toRgb(above, 0, previous);
+        }
+
+        for (int row = 0; row < rows; row++) {
+            toRgb(pixels, row * width, current);
+            int type = filterRow(current, previous, candidates);
+            int offset = row * (1 + rowBytes);
+            filtered[offset] = (byte) type;
+            System.arraycopy(candidates[type], 0, filtered, offset + 1, rowBytes);
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        Adler32 checksum = new Adler32();
+        checksum.update(filtered);
+
+        Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(filtered);
+            if (last) {
+                deflater.finish();
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(filtered.length / 4 + 64);
+            byte[] buffer = new byte[IDAT_SIZE];
+            int flush = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+            while (true) {
+                int n = deflater.deflate(buffer, 0, buffer.length, flush);
+                compressed.write(buffer, 0, n);
+                // A sync flush is complete once it no longer fills the whole buffer
+                if (last ? deflater.finished() : n < buffer.length) {
+                    break;
+                }
+            }
+            return new Band(compressed.toByteArray(), checksum.getValue(), filtered.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Apply all five PNG filters to a row and pick the one with the smallest sum
+     * of absolute values, the usual heuristic for the most compressible output
+     * @return the chosen filter type, whose output is in candidates[type]
+     */
+    private static int filterRow(byte[] row, byte[] above, byte[][] candidates) {
+        int best = 0;
+        long bestSum = Long.MAX_VALUE;
+        for (int type = 0; type < candidates.length; type++) {
+            byte[] out = candidates[type];
+            long sum = 0;
+            for (int i = 0; i < row.length; i++) {
+                int x = row[i] & 0xff;
+                int a = i >= BYTES_PER_PIXEL ? row[i - BYTES_PER_PIXEL] & 0xff : 0;
+                int b = above[i] & 0xff;
+                int c = i >= BYTES_PER_PIXEL ? above[i - BYTES_PER_PIXEL] & 0xff : 0;
+                int predictor;
+                switch (type) {
+                    case 1: predictor = a; break;
+                    case 2: predictor = b; break;
+                    case 3: predictor = (a + b) >>> 1; break;
+                    case 4: predictor = paeth(a, b, c); break;
+                    default: predictor = 0; break;
+                }
+                byte value = (byte) (x - predictor);
+                out[i] = value;
+                sum += Math.abs(value);
+            }
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = type;
+            }
+        }
+        return best;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private void toRgb(int[] argb, int offset, byte[] rgb) {
+        for (int i = 0; i < rgb.length; i += BYTES_PER_PIXEL) {
+            int color = argb[offset++];
+            rgb[i] = (byte) (color >> 16);
+            rgb[i + 1] = (byte) (color >> 8);
+            rgb[i + 2] = (byte) color;
+        }
+    }
+
+    /**
+     * Adler-32 of the concatenation of two byte sequences from their checksums,
+     * as zlib's adler32_combine
+     * @param length2 length of the second sequence
+     */
+    static long combineAdler(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum2 >= ((long) ADLER_BASE << 1)) sum2 -= ((long) ADLER_BASE << 1);
+        if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * FLEVEL field of the zlib header for a Deflater level
+     */
+    private static int zlibLevelHint(int level) {
+        if (level == Deflater.DEFAULT_COMPRESSION) {
+            return 2;
+        }
+        return level < 2 ? 0 : level < 6 ? 1 : level == 6 ? 2 : 3;
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * A compressed band with the checksum and length of its uncompressed data
+     */
+    private static class Band {
+        final byte[] data;
+        final long adler;
+        final long length;
+
+        Band(byte[] data, long adler, long length) {
+            this.data = data;
+            this.adler = adler;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Packs everything written to it into chunks of up to IDAT_SIZE bytes
+     */
+    private class ChunkOutputStream extends OutputStream {
+        private final String type;
+        private final byte[] buffer = new byte[IDAT_SIZE];
+        private int count;
+
+        ChunkOutputStream(String type) {
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                int n = Math.min(length, buffer.length - count);
+                System.arraycopy(data, offset, buffer, count, n);
+                count += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0) {
+                writeChunk(type, buffer, count);
+                count = 0;
+            }
+        }
+    }
+}
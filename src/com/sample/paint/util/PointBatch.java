@@ -0,0 +1,181 @@
+package com.sample.paint.util;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import com.jogamp.opengl.GL;
+import com.jogamp.opengl.GL2;
+
+/**
+ * Collects rasterized points and horizontal spans into a reusable direct vertex
+ * buffer and submits them with one vertex-array draw per run of primitives sharing
+ * type, color and thickness. Runs are flushed in the order they were produced so
+ * overlapping shapes keep their painter's order.
+ */
+public class PointBatch implements RasterTarget {
+    private static final int INITIAL_CAPACITY = 4096;     // vertices
+    private static final int MAX_CAPACITY = 1 << 20;      // vertices per draw call
+
+    private GL2 gl;
+    private float pixelSize = 0.001f;
+    private FloatBuffer vertices;
+    private int count;
+
+    // Key of the run currently being collected
+    private int mode;
+    private int rgb;
+    private float thickness;
+
+    // Running totals for frame statistics
+    private long pointTotal;
+    private long spanTotal;
+    private long drawTotal;
+    private long vertexTotal;
+
+    public PointBatch() {
+        vertices = allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Bind the batch to the GL context of the current frame
+     * @param pixelSize world units per device pixel of the current projection
+     */
+    public void begin(GL2 gl, float pixelSize) {
+        this.gl = gl;
+        this.pixelSize = pixelSize;
+        vertices.clear();
+        count = 0;
+    }
+
+    /**
+     * Queue a point; starts a new run if color or thickness differ from the pending one
+     */
+    @Override
+    public void plot(float x, float y, Color color, float thickness) {
+        startRun(GL.GL_POINTS, color, thickness);
+        put(x, y);
+        pointTotal++;
+    }
+
+    /**
+     * Queue a horizontal span from x1 to x2 on scan line y, drawn as one line segment
+     */
+    @Override
+    public void span(float x1, float x2, float y, Color color, float thickness) {
+        startRun(GL.GL_LINES, color, thickness);
+        put(x1, y);
+        put(x2, y);
+        spanTotal++;
+    }
+
+    @Override
+    public float getPixelSize() {
+        return pixelSize;
+    }
+
+    private void startRun(int mode, Color color, float thickness) {
+        int runRgb = color.getRGB() & 0xffffff;
+        if (count > 0 && (mode != this.mode || runRgb != rgb || thickness != this.thickness)) {
+            flush();
+        }
+        if (count == 0) {
+            this.mode = mode;
+            rgb = runRgb;
+            this.thickness = thickness;
+        }
+    }
+
+    private void put(float x, float y) {
+        if (count == vertices.capacity() / 2) {
+            grow();
+        }
+        vertices.put(x).put(y);
+        count++;
+    }
+
+    /**
+     * Submit the pending run to OpenGL
+     */
+    public void flush() {
+        if (count == 0) {
+            return;
+        }
+        vertices.flip();
+
+        gl.glColor3f(((rgb >> 16) & 0xff) / 255.0f, ((rgb >> 8) & 0xff) / 255.0f, (rgb & 0xff) / 255.0f);
+        if (mode == GL.GL_POINTS) {
+            gl.glPointSize(thickness);
+        } else {
+            gl.glLineWidth(thickness);
+        }
+        gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+        gl.glVertexPointer(2, GL.GL_FLOAT, 0, vertices);
+        gl.glDrawArrays(mode, 0, count);
+        drawTotal++;
+        vertexTotal += count;
+        gl.glDisableClientState(GL2.GL_VERTEX_ARRAY);
+        // Reset point size and line width
+        gl.glPointSize(1.0f);
+        gl.glLineWidth(1.0f);
+
+        vertices.clear();
+        count = 0;
+    }
+
+    /**
+     * @return points queued since the batch was created
+     */
+    public long getPointTotal() {
+        return pointTotal;
+    }
+
+    /**
+     * @return spans queued since the batch was created
+     */
+    public long getSpanTotal() {
+        return spanTotal;
+    }
+
+    /**
+     * @return draw calls submitted since the batch was created
+     */
+    public long getDrawTotal() {
+        return drawTotal;
+    }
+
+    /**
+     * @return vertices submitted since the batch was created
+     */
+    public long getVertexTotal() {
+        return vertexTotal;
+    }
+
+    /**
+     * Double the vertex buffer, or flush the run once the buffer reached its cap.
+     * The cap is even so a span is never split across two draws.
+     */
+    private void grow() {
+        int capacity = vertices.capacity() / 2;
+        if (capacity >= MAX_CAPACITY) {
+            int pendingMode = mode;
+            int pendingRgb = rgb;
+            float pendingThickness = thickness;
+            flush();
+            mode = pendingMode;
+            rgb = pendingRgb;
+            thickness = pendingThickness;
+            return;
+        }
+        FloatBuffer larger = allocate(capacity * 2);
+        vertices.flip();
+        larger.put(vertices);
+        vertices = larger;
+    }
+
+    private static FloatBuffer allocate(int vertexCount) {
+        return ByteBuffer.allocateDirect(vertexCount * 2 * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
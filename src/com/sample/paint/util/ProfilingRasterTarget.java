@@ -0,0 +1,133 @@
+package com.sample.paint.util;
+
+import com.sample.paint.model.Shape;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Raster target decorator that counts the points and spans emitted per shape and
+ * per DrawingAlgorithms routine, and records per-pixel writes in an overdraw map.
+ * Every sample is still forwarded to the wrapped target, so the frame renders normally.
+ */
+public class ProfilingRasterTarget implements RasterTarget {
+    private static final int TOP_SHAPES = 10;
+
+    private final RasterTarget delegate;
+    private final OverdrawRasterTarget overdraw;
+
+    // Counters are {points, spans}
+    private final Map<String, long[]> shapeCounts = new LinkedHashMap<>();
+    private final Map<String, long[]> routineCounts = new LinkedHashMap<>();
+    private long[] currentShape;
+    private long[] currentRoutine;
+    private long points;
+    private long spans;
+
+    /**
+     * @param overdraw counts writes per pixel; its view must match the delegate's
+     */
+    public ProfilingRasterTarget(RasterTarget delegate, OverdrawRasterTarget overdraw) {
+        this.delegate = delegate;
+        this.overdraw = overdraw;
+        currentShape = shapeCounts.computeIfAbsent("(no shape)", key -> new long[2]);
+        beginRoutine("(direct)");
+    }
+
+    @Override
+    public void plot(float x, float y, Color color, float thickness) {
+        currentShape[0]++;
+        currentRoutine[0]++;
+        points++;
+        overdraw.plot(x, y, color, thickness);
+        delegate.plot(x, y, color, thickness);
+    }
+
+    @Override
+    public void span(float x1, float x2, float y, Color color, float thickness) {
+        currentShape[1]++;
+        currentRoutine[1]++;
+        spans++;
+        overdraw.span(x1, x2, y, color, thickness);
+        delegate.span(x1, x2, y, color, thickness);
+    }
+
+    @Override
+    public float getPixelSize() {
+        return delegate.getPixelSize();
+    }
+
+    @Override
+    public void beginShape(Shape shape, int index) {
+        currentShape = shapeCounts.computeIfAbsent(shape.getClass().getSimpleName() + " #" + index, key -> new long[2]);
+        delegate.beginShape(shape, index);
+    }
+
+    @Override
+    public void beginRoutine(String name) {
+        currentRoutine = routineCounts.computeIfAbsent(name, key -> new long[2]);
+        delegate.beginRoutine(name);
+    }
+
+    public OverdrawRasterTarget getOverdraw() {
+        return overdraw;
+    }
+
+    public long getPointCount() {
+        return points;
+    }
+
+    public long getSpanCount() {
+        return spans;
+    }
+
+    /**
+     * @return average writes per covered pixel
+     */
+    public float getAverageOverdraw() {
+        int covered = overdraw.getCoveredPixels();
+        return covered == 0 ? 0 : (float) overdraw.getTotalWrites() / covered;
+    }
+
+    /**
+     * Multi-line report of the frame: totals, overdraw, every routine and the
+     * shapes that emitted the most samples
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Frame: %d points, %d spans, %d pixel writes, overdraw avg %.2f max %d%n",
+                points, spans, overdraw.getTotalWrites(), getAverageOverdraw(), overdraw.getMaxWrites()));
+
+        summary.append("By routine:").append(System.lineSeparator());
+        for (Map.Entry<String, long[]> entry : sortBySamples(routineCounts)) {
+            appendRow(summary, entry);
+        }
+
+        List<Map.Entry<String, long[]>> shapes = sortBySamples(shapeCounts);
+        summary.append(String.format("Top shapes (%d of %d):%n", Math.min(TOP_SHAPES, shapes.size()), shapes.size()));
+        for (Map.Entry<String, long[]> entry : shapes.subList(0, Math.min(TOP_SHAPES, shapes.size()))) {
+            appendRow(summary, entry);
+        }
+        return summary.toString();
+    }
+
+    private static List<Map.Entry<String, long[]>> sortBySamples(Map<String, long[]> counts) {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+            if (entry.getValue()[0] + entry.getValue()[1] > 0) {
+                entries.add(entry);
+            }
+        }
+        entries.sort(Comparator.comparingLong((Map.Entry<String, long[]> entry) ->
+                entry.getValue()[0] + entry.getValue()[1]).reversed());
+        return entries;
+    }
+
+    private static void appendRow(StringBuilder summary, Map.Entry<String, long[]> entry) {
+        summary.append(String.format("  %-20s %10d points %10d spans%n",
+                entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+    }
+}
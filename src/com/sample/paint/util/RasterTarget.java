@@ -0,0 +1,49 @@
+package com.sample.paint.util;
+
+import java.awt.Color;
+import com.sample.paint.model.Bounds;
+import com.sample.paint.model.Shape;
+
+/**
+ * Destination for the samples produced by DrawingAlgorithms.
+ * Coordinates are in world space; thickness is in device pixels.
+ */
+public interface RasterTarget {
+
+    /**
+     * Plot a square point of the given size centered at (x, y)
+     */
+    void plot(float x, float y, Color color, float thickness);
+
+    /**
+     * Fill the horizontal span from x1 to x2 on scan line y
+     */
+    void span(float x1, float x2, float y, Color color, float thickness);
+
+    /**
+     * @return world units covered by one device pixel, used to pick the level of detail
+     */
+    float getPixelSize();
+
+    /**
+     * @return the world-space rectangle a point or span of the given thickness must
+     *         overlap to write anything, or null if every sample may show; routines
+     *         use it to skip the samples a clipped target would discard
+     */
+    default Bounds getClipBounds(float thickness) {
+        return null;
+    }
+
+    /**
+     * Called before a shape produces its samples, so instrumenting targets can attribute them
+     * @param index the shape's position in the drawn list
+     */
+    default void beginShape(Shape shape, int index) {
+    }
+
+    /**
+     * Called when a DrawingAlgorithms routine starts producing samples
+     */
+    default void beginRoutine(String name) {
+    }
+}
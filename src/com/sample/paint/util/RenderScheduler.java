@@ -0,0 +1,84 @@
+package com.sample.paint.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.jogamp.opengl.GLAutoDrawable;
+
+/**
+ * Renders a drawable on demand instead of at a fixed frame rate.
+ * Callers mark layers dirty; any number of invalidations arriving before the
+ * next frame are coalesced into a single display() call, and frames are spaced
+ * by an optional frame-rate cap. Nothing is rendered while nothing changes.
+ */
+public class RenderScheduler {
+    /** Committed shapes, background or view changed; the retained scene must be rebuilt */
+    public static final int SCENE = 1;
+    /** Only the ghost shape, trails or cursor overlay changed */
+    public static final int OVERLAY = 1 << 1;
+
+    private final GLAutoDrawable drawable;
+    private final long minFrameIntervalNanos;
+    private final ScheduledExecutorService executor;
+    private final AtomicInteger dirtyLayers = new AtomicInteger();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private volatile long lastFrameNanos;
+
+    /**
+     * @param maxFps frame-rate cap, or 0 to render as soon as something changes
+     */
+    public RenderScheduler(GLAutoDrawable drawable, int maxFps) {
+        this.drawable = drawable;
+        this.minFrameIntervalNanos = maxFps > 0 ? TimeUnit.SECONDS.toNanos(1) / maxFps : 0;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "render-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lastFrameNanos = System.nanoTime() - minFrameIntervalNanos;
+    }
+
+    /**
+     * Mark layers dirty and schedule a frame unless one is already pending.
+     * Safe to call from any thread.
+     */
+    public void invalidate(int layers) {
+        dirtyLayers.getAndAccumulate(layers, (current, added) -> current | added);
+        if (executor.isShutdown()) {
+            return;
+        }
+        if (frameScheduled.compareAndSet(false, true)) {
+            long delay = Math.max(0, lastFrameNanos + minFrameIntervalNanos - System.nanoTime());
+            executor.schedule(this::renderFrame, delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Returns the layers invalidated since the previous call and clears them.
+     * Called at the start of display(), which may also be triggered by the toolkit.
+     */
+    public int takeDirtyLayers() {
+        return dirtyLayers.getAndSet(0);
+    }
+
+    private void renderFrame() {
+        // Invalidations arriving from here on schedule the next frame
+        frameScheduled.set(false);
+        lastFrameNanos = System.nanoTime();
+        try {
+            drawable.display();
+        } catch (RuntimeException e) {
+            // Keep scheduling frames; the next invalidation retries
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stop scheduling frames
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,106 @@
+package com.sample.paint.util;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.Deflater;
+import com.sample.paint.model.Bounds;
+import com.sample.paint.model.Shape;
+
+/**
+ * Renders the scene to a PNG image of any size without a GL context.
+ * The image is rasterized in horizontal bands on the tiled software rasterizer
+ * and each band is handed to the encoder, which compresses bands in parallel
+ * while the next ones are drawn. Memory use is bounded by the band size and the
+ * number of bands in flight, not the image size. A band's tiles generate only the
+ * samples inside them, so shapes spanning many bands cost no more than one pass.
+ */
+public class SceneExporter {
+    // Pixels per band; 1M ARGB pixels take 4 MB and give several progress steps per image
+    private static final int BAND_PIXELS = 1 << 20;
+
+    /**
+     * Receives export progress on the exporting thread after every band
+     */
+    public interface ProgressListener {
+        void rowsWritten(int rows, int totalRows);
+    }
+
+    private final TiledRasterizer rasterizer;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    public SceneExporter() {
+        this(new TiledRasterizer());
+    }
+
+    public SceneExporter(TiledRasterizer rasterizer) {
+        this.rasterizer = rasterizer;
+    }
+
+    /**
+     * @param compressionLevel Deflater level, 0 (fastest, largest) to 9 (slowest, smallest)
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Render a world-space region of the scene and encode it as PNG
+     * @param region world-space rectangle mapped onto the whole image
+     * @param thicknessScale stroke thickness multiplier, at least 1, so strokes keep their
+     *        on-screen weight when exporting at a higher resolution than the canvas
+     */
+    public void exportPng(List<? extends Shape> shapes, Color background, Bounds region,
+            int width, int height, float thicknessScale, OutputStream out) throws IOException {
+        exportPng(shapes, background, region, width, height, thicknessScale, out, null);
+    }
+
+    /**
+     * Render and encode as above, reporting progress after every band. Interrupting
+     * the exporting thread cancels the export with an InterruptedIOException.
+     * @param listener progress callback, may be null
+     */
+    public void exportPng(List<? extends Shape> shapes, Color background, Bounds region,
+            int width, int height, float thicknessScale, OutputStream out,
+            ProgressListener listener) throws IOException {
+        int bandHeight = Math.max(1, Math.min(height, BAND_PIXELS / width));
+        int[] band = new int[width * bandHeight];
+        float rowHeight = region.getHeight() / height;
+
+        try (PngWriter png = new PngWriter(out, width, height, compressionLevel)) {
+            for (int y = 0; y < height; y += bandHeight) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Export cancelled");
+                }
+                int rows = Math.min(bandHeight, height - y);
+                float top = region.maxY - y * rowHeight;
+                Bounds bandView = new Bounds(region.minX, top - rows * rowHeight, region.maxX, top);
+                rasterizer.render(band, width, rows, bandView, shapes, background, thicknessScale);
+                png.writeRows(band, 0, rows);
+                if (listener != null) {
+                    listener.rowsWritten(y + rows, height);
+                }
+            }
+        }
+    }
+
+    /**
+     * Grow a region around its center so it has the aspect ratio of the output image
+     */
+    public static Bounds fitAspect(Bounds region, int width, int height) {
+        float aspect = (float) width / height;
+        float regionWidth = region.getWidth();
+        float regionHeight = region.getHeight();
+        if (regionWidth < regionHeight * aspect) {
+            regionWidth = regionHeight * aspect;
+        } else {
+            regionHeight = regionWidth / aspect;
+        }
+        float centerX = (region.minX + region.maxX) / 2;
+        float centerY = (region.minY + region.maxY) / 2;
+        return new Bounds(centerX - regionWidth / 2, centerY - regionHeight / 2,
+                centerX + regionWidth / 2, centerY + regionHeight / 2);
+    }
+}
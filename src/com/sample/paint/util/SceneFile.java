@@ -0,0 +1,331 @@
+package com.sample.paint.util;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import com.sample.paint.model.BrushStroke;
+import com.sample.paint.model.Circle;
+import com.sample.paint.model.Ellipse;
+import com.sample.paint.model.FillTool;
+import com.sample.paint.model.Line;
+import com.sample.paint.model.Rectangle;
+import com.sample.paint.model.Shape;
+import com.sample.paint.model.Triangle;
+
+/**
+ * Versioned binary document format for drawings.
+ *
+ * Layout (big-endian): magic "PNTD", int version, int background ARGB, int shape
+ * count, then one record per shape in draw order: byte type, int ARGB color,
+ * float thickness, byte flags (bit 0 = filled), followed by the geometry as raw
+ * floats. Brush strokes store every level of detail as a tolerance, a point
+ * count and packed x, y floats, so loading needs no re-simplification and every
+ * shape round-trips exactly.
+ *
+ * Writing streams through a reusable buffer into a temporary file that then
+ * replaces the target, so a failed save leaves the previous drawing intact.
+ * Reading copies the file into memory and closes it, leaving nothing mapped.
+ */
+public class SceneFile {
+    public static final String EXTENSION = "pdraw";
+
+    private static final int MAGIC = 0x504E5444; // "PNTD"
+    private static final int VERSION = 1;
+
+    private static final byte LINE = 1;
+    private static final byte RECTANGLE = 2;
+    private static final byte CIRCLE = 3;
+    private static final byte ELLIPSE = 4;
+    private static final byte TRIANGLE = 5;
+    private static final byte BRUSH_STROKE = 6;
+    private static final byte FILL_TOOL = 7;
+
+    private static final int FLAG_FILLED = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private SceneFile() {
+    }
+
+    /**
+     * A loaded drawing: its shapes in draw order and its background color
+     */
+    public static class Contents {
+        private final List<Shape> shapes;
+        private final Color background;
+
+        Contents(List<Shape> shapes, Color background) {
+            this.shapes = Collections.unmodifiableList(shapes);
+            this.background = background;
+        }
+
+        public List<Shape> getShapes() {
+            return shapes;
+        }
+
+        public Color getBackground() {
+            return background;
+        }
+    }
+
+    /**
+     * Write a drawing, atomically replacing the file if it exists. The drawing is
+     * written and synced to a sibling temporary file first, so the file holds either
+     * the old or the new drawing, never a partial one.
+     */
+    public static void write(Path file, List<? extends Shape> shapes, Color background) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        boolean moved = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Writer out = new Writer(channel);
+                out.putInt(MAGIC);
+                out.putInt(VERSION);
+                out.putInt(background.getRGB());
+                out.putInt(shapes.size());
+                for (Shape shape : shapes) {
+                    writeShape(out, shape);
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Read a drawing written by write()
+     * @throws IOException if the file is not a drawing, has an unsupported version or is truncated
+     */
+    public static Contents read(Path file) throws IOException {
+        ByteBuffer in = readFully(file);
+        try {
+            if (in.remaining() < 16 || in.getInt() != MAGIC) {
+                throw new IOException("Not a drawing file: " + file);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported drawing file version: " + version);
+            }
+            Color background = new Color(in.getInt(), true);
+            int count = checkCount(in.getInt(), in.remaining() / 10);
+
+            List<Shape> shapes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                shapes.add(readShape(in));
+            }
+            return new Contents(shapes, background);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated drawing file: " + file, e);
+        }
+    }
+
+    /**
+     * Read a whole file into a heap buffer and close it. Unlike a mapping this keeps
+     * nothing open, so the file can be replaced or deleted right away, also on Windows.
+     */
+    static ByteBuffer readFully(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file + ", " + size + " bytes");
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until full or the end of a file that shrank meanwhile
+            }
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Encode one shape record; also used for the records of the scene journal
+     */
+    static void writeShape(Writer out, Shape shape) throws IOException {
+        byte type = typeOf(shape);
+        out.ensure(10);
+        out.buffer.put(type);
+        out.buffer.putInt(shape.getColor().getRGB());
+        out.buffer.putFloat(shape.getThickness());
+        out.buffer.put((byte) (shape.isFilled() ? FLAG_FILLED : 0));
+
+        switch (type) {
+            case LINE: {
+                Line line = (Line) shape;
+                out.putFloats(line.getStartX(), line.getStartY(), line.getEndX(), line.getEndY());
+                break;
+            }
+            case RECTANGLE: {
+                Rectangle rect = (Rectangle) shape;
+                out.putFloats(rect.getX1(), rect.getY1(), rect.getX2(), rect.getY2());
+                break;
+            }
+            case CIRCLE: {
+                Circle circle = (Circle) shape;
+                out.putFloats(circle.getCenterX(), circle.getCenterY(), circle.getRadius());
+                break;
+            }
+            case ELLIPSE: {
+                Ellipse ellipse = (Ellipse) shape;
+                out.putFloats(ellipse.getCenterX(), ellipse.getCenterY(), ellipse.getRadiusX(), ellipse.getRadiusY());
+                break;
+            }
+            case TRIANGLE: {
+                Triangle tri = (Triangle) shape;
+                out.putFloats(tri.getX1(), tri.getY1(), tri.getX2(), tri.getY2(), tri.getX3(), tri.getY3());
+                break;
+            }
+            case BRUSH_STROKE: {
+                BrushStroke stroke = (BrushStroke) shape;
+                out.putInt(stroke.getLevelCount());
+                for (int level = 0; level < stroke.getLevelCount(); level++) {
+                    FloatBuffer coords = stroke.getLevelCoordinates(level);
+                    out.ensure(8);
+                    out.buffer.putFloat(stroke.getLevelTolerance(level));
+                    out.buffer.putInt(coords.remaining() / 2);
+                    out.putFloats(coords);
+                }
+                break;
+            }
+            default: {
+                FillTool fill = (FillTool) shape;
+                out.putFloats(fill.getX(), fill.getY());
+                break;
+            }
+        }
+    }
+
+    private static byte typeOf(Shape shape) throws IOException {
+        if (shape instanceof Line) return LINE;
+        if (shape instanceof Rectangle) return RECTANGLE;
+        if (shape instanceof Circle) return CIRCLE;
+        if (shape instanceof Ellipse) return ELLIPSE;
+        if (shape instanceof Triangle) return TRIANGLE;
+        if (shape instanceof BrushStroke) return BRUSH_STROKE;
+        if (shape instanceof FillTool) return FILL_TOOL;
+        throw new IOException("Unsupported shape type: " + shape.getClass().getName());
+    }
+
+    /**
+     * Decode one shape record written by writeShape
+     */
+    static Shape readShape(ByteBuffer in) throws IOException {
+        byte type = in.get();
+        Color color = new Color(in.getInt(), true);
+        float thickness = in.getFloat();
+        boolean filled = (in.get() & FLAG_FILLED) != 0;
+
+        switch (type) {
+            case LINE:
+                return new Line(in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(), color, thickness);
+            case RECTANGLE:
+                return new Rectangle(in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(), color, filled, thickness);
+            case CIRCLE:
+                return Circle.fromCenter(in.getFloat(), in.getFloat(), in.getFloat(), color, filled, thickness);
+            case ELLIPSE:
+                return Ellipse.fromCenter(in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(), color, filled, thickness);
+            case TRIANGLE:
+                return Triangle.fromVertices(in.getFloat(), in.getFloat(), in.getFloat(), in.getFloat(),
+                        in.getFloat(), in.getFloat(), color, filled, thickness);
+            case BRUSH_STROKE: {
+                int levelCount = checkCount(in.getInt(), in.remaining() / 8);
+                if (levelCount == 0) {
+                    throw new IOException("Brush stroke without points");
+                }
+                float[][] levels = new float[levelCount][];
+                float[] tolerances = new float[levelCount];
+                for (int level = 0; level < levelCount; level++) {
+                    tolerances[level] = in.getFloat();
+                    int points = checkCount(in.getInt(), in.remaining() / 8);
+                    levels[level] = new float[points * 2];
+                    in.asFloatBuffer().get(levels[level]);
+                    in.position(in.position() + points * 8);
+                }
+                return BrushStroke.fromLevels(levels, tolerances, color, thickness);
+            }
+            case FILL_TOOL:
+                return new FillTool(in.getFloat(), in.getFloat(), color);
+            default:
+                throw new IOException("Unknown shape type in drawing file: " + type);
+        }
+    }
+
+    /**
+     * Reject counts that cannot fit in the rest of the file before allocating for them
+     */
+    private static int checkCount(int count, int max) throws IOException {
+        if (count < 0 || count > max) {
+            throw new IOException("Corrupt drawing file: invalid count " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Streaming writer that fills a reusable buffer and drains it to the channel
+     */
+    static class Writer {
+        final WritableByteChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putFloats(float... values) throws IOException {
+            ensure(values.length * 4);
+            for (float value : values) {
+                buffer.putFloat(value);
+            }
+        }
+
+        /**
+         * Bulk-copy floats, in buffer-sized pieces for long strokes
+         */
+        void putFloats(FloatBuffer values) throws IOException {
+            while (values.hasRemaining()) {
+                ensure(4);
+                int n = Math.min(values.remaining(), buffer.remaining() / 4);
+                FloatBuffer slice = values.slice();
+                slice.limit(n);
+                buffer.asFloatBuffer().put(slice);
+                buffer.position(buffer.position() + n * 4);
+                values.position(values.position() + n);
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,633 @@
+package com.sample.paint.util;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import com.sample.paint.model.Scene;
+import com.sample.paint.model.SceneSnapshot;
+import com.sample.paint.model.Shape;
+
+/**
+ * Write-ahead journal of scene mutations for crash recovery.
+ *
+ * Each mutation is encoded on the calling thread as a small checksummed record
+ * and appended by a background writer, which syncs every batch of queued records
+ * to disk at once (group commit). Once the log grows past a threshold the caller
+ * is asked for a checkpoint: the whole scene is written as snapshot-N.pdraw and a
+ * fresh journal-N.log is started, after which older generations are deleted on a
+ * best-effort basis; files that cannot be deleted yet are retried at the next one.
+ * Recovery loads the newest snapshot and replays its journal up to the first torn
+ * or corrupt record. A generation that cannot be recovered is set aside as
+ * *.corrupt files, which checkpoints never delete. One process at a time may use
+ * a directory; lock() keeps a second instance from overwriting its generations.
+ *
+ * Registered as a scene listener, it journals every published change and takes
+ * checkpoints on its own. Undo and redo replace the whole scene; they are journaled
+ * as the shapes the scene reports removed and inserted, which it finds from the
+ * tree nodes the two versions do not share, so their cost follows the size of the
+ * step rather than the document.
+ */
+public class SceneJournal implements Scene.Listener {
+    private static final int MAGIC = 0x504E544A; // "PNTJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final long CHECKPOINT_BYTES = 4L << 20;
+    private static final String LOCK_FILE = "autosave.lock";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+
+    private static final byte ADD = 1;
+    private static final byte SET = 2;
+    private static final byte REMOVE = 3;
+    private static final byte CLEAR = 4;
+    private static final byte BACKGROUND = 5;
+    private static final byte SPLICE = 6;
+
+    private final Path directory;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+
+    // Record encoding, used by the mutating thread only
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final SceneFile.Writer recordWriter = new SceneFile.Writer(Channels.newChannel(recordBytes));
+    private long bytesSinceCheckpoint;
+    private long generation;
+
+    // Owned by the writer thread
+    private FileChannel log;
+    private volatile IOException failure;
+    private volatile Consumer<IOException> failureListener;
+
+    /**
+     * Scene state to write as a checkpoint; the shape list must not change afterwards
+     */
+    private static class Checkpoint {
+        final List<Shape> shapes;
+        final Color background;
+        final long generation;
+
+        Checkpoint(List<Shape> shapes, Color background, long generation) {
+            this.shapes = shapes;
+            this.background = background;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Shapes removed at a position of the scene and the shapes inserted there instead
+     */
+    private static class Splice {
+        final int index;
+        final List<Shape> inserted = new ArrayList<>();
+        int removed;
+
+        Splice(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Start journaling into a directory, beginning with a checkpoint of the given
+     * scene, e.g. the one returned by recover()
+     */
+    public SceneJournal(Path directory, List<? extends Shape> shapes, Color background) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        generation = newestGeneration(directory);
+
+        writerThread = new Thread(this::runWriter, "scene-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        checkpoint(shapes, background);
+    }
+
+    /**
+     * Restore the scene from the newest snapshot and its journal
+     * @return the recovered scene, or null if the directory holds no session
+     */
+    public static SceneFile.Contents recover(Path directory) throws IOException {
+        long generation = newestGeneration(directory);
+        if (generation == 0) {
+            return null;
+        }
+        SceneFile.Contents snapshot = SceneFile.read(snapshotPath(directory, generation));
+        List<Shape> shapes = new ArrayList<>(snapshot.getShapes());
+        Color background = snapshot.getBackground();
+
+        Path logPath = logPath(directory, generation);
+        if (Files.exists(logPath)) {
+            background = replay(logPath, shapes, background);
+        }
+        return new SceneFile.Contents(shapes, background);
+    }
+
+    /**
+     * Lock a directory for this process, from recovery until the journal is closed;
+     * release it by closing the lock's channel
+     * @return the lock, or null if another process holds it
+     */
+    public static FileLock lock(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+            }
+            return lock;
+        } catch (IOException | OverlappingFileLockException e) {
+            channel.close();
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Move the newest generation, e.g. one recover() failed to read, out of the way
+     * as *.corrupt files, so a new journal starts without deleting it
+     * @return the new path of its snapshot, or null if the directory holds no session
+     */
+    public static Path setAside(Path directory) throws IOException {
+        long generation = newestGeneration(directory);
+        if (generation == 0) {
+            return null;
+        }
+        Path snapshot = setAsideFile(snapshotPath(directory, generation));
+        Path log = logPath(directory, generation);
+        if (Files.exists(log)) {
+            setAsideFile(log);
+        }
+        return snapshot;
+    }
+
+    private static Path setAsideFile(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        Path target = file.resolveSibling(name + CORRUPT_SUFFIX);
+        for (int copy = 2; Files.exists(target); copy++) {
+            target = file.resolveSibling(name + "-" + copy + CORRUPT_SUFFIX);
+        }
+        return Files.move(file, target);
+    }
+
+    public synchronized void add(Shape shape) {
+        beginRecord(ADD);
+        encodeShape(shape);
+        endRecord();
+    }
+
+    public synchronized void set(int index, Shape shape) {
+        beginRecord(SET);
+        writeInt(index);
+        encodeShape(shape);
+        endRecord();
+    }
+
+    /**
+     * @param indices positions of the removed shapes before the removal, ascending
+     */
+    public synchronized void remove(int[] indices) {
+        beginRecord(REMOVE);
+        ByteBuffer data = ByteBuffer.allocate(4 + indices.length * 4);
+        data.putInt(indices.length);
+        for (int index : indices) {
+            data.putInt(index);
+        }
+        recordBytes.write(data.array(), 0, data.capacity());
+        endRecord();
+    }
+
+    public synchronized void clear() {
+        beginRecord(CLEAR);
+        endRecord();
+    }
+
+    public synchronized void setBackground(Color background) {
+        beginRecord(BACKGROUND);
+        writeInt(background.getRGB());
+        endRecord();
+    }
+
+    /**
+     * Journal the change from one version of the scene to another as one record of
+     * splices, each removing a run of shapes at a position and inserting others there
+     * @param difference the shapes removed from the older version and inserted into
+     *        the newer one; the shapes both keep must be in the same order in both
+     */
+    public synchronized void splice(PersistentVector.Difference<Shape> difference) {
+        if (difference.isEmpty()) {
+            return;
+        }
+        int[] removed = difference.getRemovedIndices();
+        int[] insertedAt = difference.getInsertedIndices();
+        List<Shape> inserted = difference.getInserted();
+
+        // Apply the changes in position order; everything before a splice already
+        // matches the newer version, and removed positions shift by the net change so far
+        List<Splice> splices = new ArrayList<>();
+        int r = 0, k = 0, shift = 0;
+        while (r < removed.length || k < insertedAt.length) {
+            int removeAt = r < removed.length ? removed[r] + shift : Integer.MAX_VALUE;
+            int insertAt = k < insertedAt.length ? insertedAt[k] : Integer.MAX_VALUE;
+            Splice splice = new Splice(Math.min(removeAt, insertAt));
+            while (r < removed.length && removed[r] + shift == splice.index + splice.removed) {
+                splice.removed++;
+                r++;
+            }
+            while (k < insertedAt.length && insertedAt[k] == splice.index + splice.inserted.size()) {
+                splice.inserted.add(inserted.get(k));
+                k++;
+            }
+            shift += splice.inserted.size() - splice.removed;
+            splices.add(splice);
+        }
+
+        beginRecord(SPLICE);
+        writeInt(splices.size());
+        for (Splice each : splices) {
+            writeInt(each.index);
+            writeInt(each.removed);
+            writeInt(each.inserted.size());
+            for (Shape shape : each.inserted) {
+                encodeShape(shape);
+            }
+        }
+        endRecord();
+    }
+
+    @Override
+    public synchronized void shapeAdded(SceneSnapshot scene, Shape shape) {
+        add(shape);
+        checkpointIfDue(scene);
+    }
+
+    @Override
+    public synchronized void shapeReplaced(SceneSnapshot scene, int index, Shape oldShape, Shape newShape) {
+        set(index, newShape);
+        checkpointIfDue(scene);
+    }
+
+    @Override
+    public synchronized void shapesRemoved(SceneSnapshot scene, int[] indices, List<Shape> removed) {
+        remove(indices);
+        checkpointIfDue(scene);
+    }
+
+    @Override
+    public synchronized void backgroundChanged(SceneSnapshot scene) {
+        setBackground(scene.getBackground());
+    }
+
+    @Override
+    public synchronized void sceneReplaced(SceneSnapshot before, SceneSnapshot scene,
+            PersistentVector.Difference<Shape> difference) {
+        if (difference != null) {
+            splice(difference);
+            if (!before.getBackground().equals(scene.getBackground())) {
+                setBackground(scene.getBackground());
+            }
+            checkpointIfDue(scene);
+        } else {
+            // Loaded or unrelated; the snapshot is immutable, so this does not copy the shapes
+            checkpoint(scene.getShapes(), scene.getBackground());
+        }
+    }
+
+    private void checkpointIfDue(SceneSnapshot scene) {
+        if (isCheckpointDue()) {
+            checkpoint(scene.getShapes(), scene.getBackground());
+        }
+    }
+
+    /**
+     * @return true once enough has been logged that a checkpoint should be taken
+     */
+    public synchronized boolean isCheckpointDue() {
+        return bytesSinceCheckpoint >= CHECKPOINT_BYTES;
+    }
+
+    /**
+     * Write the complete scene as a new snapshot and truncate the log. Only a
+     * mutable list is copied here; the shapes are encoded on the writer thread.
+     */
+    public synchronized void checkpoint(List<? extends Shape> shapes, Color background) {
+        generation++;
+        bytesSinceCheckpoint = 0;
+        queue.add(new Checkpoint(PersistentVector.of(shapes), background, generation));
+    }
+
+    /**
+     * Write and sync everything queued so far, then stop the writer
+     */
+    public void close() throws IOException {
+        CountDownLatch done = new CountDownLatch(1);
+        queue.add(done);
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread.interrupt();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the first write error, after which journaling stopped, or null
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * @param listener told on the writer thread about the first write error, after
+     *        which journaling stops; may be null
+     */
+    public void setFailureListener(Consumer<IOException> listener) {
+        this.failureListener = listener;
+    }
+
+    private void beginRecord(byte op) {
+        recordBytes.reset();
+        recordBytes.write(op);
+    }
+
+    private void writeInt(int value) {
+        recordBytes.write(value >>> 24);
+        recordBytes.write(value >>> 16);
+        recordBytes.write(value >>> 8);
+        recordBytes.write(value);
+    }
+
+    private void encodeShape(Shape shape) {
+        try {
+            SceneFile.writeShape(recordWriter, shape);
+            recordWriter.flush();
+        } catch (IOException e) {
+            // Only unsupported shape types fail; writing to memory cannot
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Frame the record as length, CRC-32 and payload and queue it for writing
+     */
+    private void endRecord() {
+        byte[] payload = recordBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        bytesSinceCheckpoint += record.remaining();
+        queue.add(record);
+    }
+
+    private void runWriter() {
+        List<Object> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                try {
+                    writeBatch(batch);
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                        System.err.println("Scene journal disabled: " + e.getMessage());
+                        Consumer<IOException> listener = failureListener;
+                        if (listener != null) {
+                            listener.accept(e);
+                        }
+                    }
+                }
+                // Release close() waiters even after a failure
+                for (Object entry : batch) {
+                    if (entry instanceof CountDownLatch) {
+                        ((CountDownLatch) entry).countDown();
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            closeLog();
+        }
+    }
+
+    /**
+     * Append a batch of queued records and sync them to disk together
+     */
+    private void writeBatch(List<Object> batch) throws IOException {
+        if (failure != null) {
+            return;
+        }
+        boolean unsynced = false;
+        for (Object entry : batch) {
+            if (entry instanceof ByteBuffer) {
+                ByteBuffer record = (ByteBuffer) entry;
+                while (record.hasRemaining()) {
+                    log.write(record);
+                }
+                unsynced = true;
+            } else if (entry instanceof Checkpoint) {
+                if (unsynced) {
+                    log.force(false);
+                    unsynced = false;
+                }
+                writeCheckpoint((Checkpoint) entry);
+            }
+        }
+        if (unsynced) {
+            log.force(false);
+        }
+    }
+
+    /**
+     * Write snapshot N atomically, switch to journal N and delete older generations
+     */
+    private void writeCheckpoint(Checkpoint checkpoint) throws IOException {
+        SceneFile.write(snapshotPath(directory, checkpoint.generation), checkpoint.shapes, checkpoint.background);
+
+        closeLog();
+        log = FileChannel.open(logPath(directory, checkpoint.generation), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            log.write(header);
+        }
+        log.force(false);
+
+        deleteOlderGenerations(checkpoint.generation);
+    }
+
+    /**
+     * Delete the snapshots and logs older than a complete generation, but not those
+     * set aside as corrupt. They are only obsolete, so a file that cannot be deleted,
+     * e.g. one still open elsewhere on Windows, is left for the next checkpoint
+     * instead of stopping the journal.
+     */
+    private void deleteOlderGenerations(long generation) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "{snapshot,journal}-*")) {
+            for (Path file : files) {
+                if (generationOf(file) < generation && !file.getFileName().toString().endsWith(CORRUPT_SUFFIX)) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        System.err.println("Scene journal: could not delete " + file + ": " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Scene journal: could not list " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void closeLog() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                // Nothing left to write
+            }
+            log = null;
+        }
+    }
+
+    /**
+     * Apply the intact records of a journal to the scene
+     * @return the background color after the replay
+     */
+    private static Color replay(Path logPath, List<Shape> shapes, Color background) throws IOException {
+        // Copied into memory rather than mapped, so the log can be deleted at the next checkpoint
+        ByteBuffer in = SceneFile.readFully(logPath);
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC || in.getInt() != VERSION) {
+            return background;
+        }
+
+        CRC32 crc = new CRC32();
+        while (in.remaining() >= 8) {
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length <= 0 || length > in.remaining()) {
+                break; // torn write at the end of the log
+            }
+            ByteBuffer payload = in.slice();
+            payload.limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            in.position(in.position() + length);
+
+            try {
+                background = apply(payload, shapes, background);
+            } catch (IOException | RuntimeException e) {
+                break; // record does not match the scene; stop at the last consistent state
+            }
+        }
+        return background;
+    }
+
+    private static Color apply(ByteBuffer record, List<Shape> shapes, Color background) throws IOException {
+        byte op = record.get();
+        switch (op) {
+            case ADD:
+                shapes.add(SceneFile.readShape(record));
+                break;
+            case SET: {
+                int index = record.getInt();
+                shapes.set(index, SceneFile.readShape(record));
+                break;
+            }
+            case REMOVE: {
+                int count = record.getInt();
+                int[] indices = new int[count];
+                for (int i = 0; i < count; i++) {
+                    indices[i] = record.getInt();
+                }
+                for (int i = count - 1; i >= 0; i--) {
+                    shapes.remove(indices[i]);
+                }
+                break;
+            }
+            case CLEAR:
+                shapes.clear();
+                break;
+            case BACKGROUND:
+                background = new Color(record.getInt(), true);
+                break;
+            case SPLICE: {
+                int count = record.getInt();
+                for (int s = 0; s < count; s++) {
+                    int index = record.getInt();
+                    int removed = record.getInt();
+                    int insertedCount = record.getInt();
+                    List<Shape> inserted = new ArrayList<>(Math.min(insertedCount, record.remaining()));
+                    for (int i = 0; i < insertedCount; i++) {
+                        inserted.add(SceneFile.readShape(record));
+                    }
+                    shapes.subList(index, index + removed).clear();
+                    shapes.addAll(index, inserted);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown journal record: " + op);
+        }
+        return background;
+    }
+
+    /**
+     * @return the newest complete generation in the directory, 0 if there is none
+     */
+    private static long newestGeneration(Path directory) throws IOException {
+        long newest = 0;
+        if (!Files.isDirectory(directory)) {
+            return newest;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "snapshot-*.pdraw")) {
+            for (Path file : files) {
+                newest = Math.max(newest, generationOf(file));
+            }
+        }
+        return newest;
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        int start = name.indexOf('-') + 1;
+        int end = name.lastIndexOf('.');
+        try {
+            return Long.parseLong(name.substring(start, end));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static Path snapshotPath(Path directory, long generation) {
+        return directory.resolve("snapshot-" + generation + "." + SceneFile.EXTENSION);
+    }
+
+    private static Path logPath(Path directory, long generation) {
+        return directory.resolve("journal-" + generation + ".log");
+    }
+}
@@ -0,0 +1,48 @@
+package com.sample.paint.util;
+
+import com.sample.paint.model.Bounds;
+import com.sample.paint.model.Shape;
+
+/**
+ * Rasterizes a list of shapes in painter's order into a raster target,
+ * skipping shapes that lie entirely outside the visible region.
+ */
+public class SceneRenderer {
+    private int drawnCount;
+    private int culledCount;
+
+    /**
+     * Draw the shapes that overlap the view, bottom to top
+     * @param view visible world-space rectangle
+     * @param pixelSize world units covered by one device pixel, used to account for stroke thickness
+     */
+    public void draw(RasterTarget target, Iterable<? extends Shape> shapes, Bounds view, float pixelSize) {
+        drawnCount = 0;
+        culledCount = 0;
+        int index = 0;
+        for (Shape shape : shapes) {
+            if (shape.intersects(view, pixelSize)) {
+                target.beginShape(shape, index);
+                shape.draw(target);
+                drawnCount++;
+            } else {
+                culledCount++;
+            }
+            index++;
+        }
+    }
+
+    /**
+     * @return number of shapes rasterized by the last draw call
+     */
+    public int getDrawnCount() {
+        return drawnCount;
+    }
+
+    /**
+     * @return number of shapes skipped as invisible by the last draw call
+     */
+    public int getCulledCount() {
+        return culledCount;
+    }
+}
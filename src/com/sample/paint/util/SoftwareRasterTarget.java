@@ -0,0 +1,168 @@
+package com.sample.paint.util;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import com.sample.paint.model.Bounds;
+
+/**
+ * Pure-Java raster target backed by an int[] ARGB framebuffer.
+ * Mirrors the GL path: points become squares of thickness pixels and spans
+ * become horizontal bars thickness pixels high. Needs no GL context, so scenes
+ * can be rendered on machines without a GPU or display.
+ */
+public class SoftwareRasterTarget implements RasterTarget {
+    private final int[] pixels;
+    private final int width;
+    private final int height;
+
+    // World-space rectangle mapped onto the framebuffer
+    private float left, top;
+    private float scaleX, scaleY; // pixels per world unit
+
+    // Inclusive pixel rectangle that writes are restricted to
+    private int clipX0, clipY0, clipX1, clipY1;
+
+    // Multiplier applied to every point and span thickness
+    private float thicknessScale = 1;
+
+    public SoftwareRasterTarget(int width, int height) {
+        this(new int[width * height], width, height);
+    }
+
+    /**
+     * Render into an existing framebuffer of width * height pixels, row 0 at the top
+     */
+    public SoftwareRasterTarget(int[] pixels, int width, int height) {
+        if (width <= 0 || height <= 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("Invalid framebuffer: width=" + width + ", height=" + height);
+        }
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        setView(-1, 1, -1, 1);
+        setClip(0, 0, width, height);
+    }
+
+    /**
+     * Sets the world-space rectangle shown by the framebuffer, like glOrtho
+     */
+    public void setView(float left, float right, float bottom, float top) {
+        this.left = left;
+        this.top = top;
+        this.scaleX = width / (right - left);
+        this.scaleY = height / (top - bottom);
+    }
+
+    /**
+     * Restricts writes to a rectangle of the framebuffer, e.g. one tile rendered
+     * concurrently with its neighbours into the same pixel array
+     */
+    public void setClip(int x, int y, int clipWidth, int clipHeight) {
+        clipX0 = Math.max(x, 0);
+        clipY0 = Math.max(y, 0);
+        clipX1 = Math.min(x + clipWidth, width) - 1;
+        clipY1 = Math.min(y + clipHeight, height) - 1;
+    }
+
+    /**
+     * Scales stroke thickness, e.g. to keep the on-screen stroke weight when
+     * rendering at a higher resolution than the canvas
+     */
+    public void setThicknessScale(float thicknessScale) {
+        this.thicknessScale = thicknessScale;
+    }
+
+    /**
+     * Fills the clip rectangle, by default the whole framebuffer, with a background color
+     */
+    public void clear(Color backgroundColor) {
+        fillRect(clipX0, clipY0, clipX1, clipY1, backgroundColor);
+    }
+
+    @Override
+    public void plot(float x, float y, Color color, float thickness) {
+        float px = (x - left) * scaleX;
+        float py = (top - y) * scaleY;
+        float half = thickness * thicknessScale / 2;
+
+        // Pixels whose centers fall inside the square point
+        int x0 = (int) Math.ceil(px - half - 0.5f);
+        int x1 = (int) Math.ceil(px + half - 0.5f) - 1;
+        int y0 = (int) Math.ceil(py - half - 0.5f);
+        int y1 = (int) Math.ceil(py + half - 0.5f) - 1;
+        fillRect(x0, y0, x1, y1, color);
+    }
+
+    @Override
+    public void span(float x1, float x2, float y, Color color, float thickness) {
+        float py = (top - y) * scaleY;
+        float half = Math.max(thickness * thicknessScale, 1) / 2;
+
+        int px0 = (int) Math.floor((Math.min(x1, x2) - left) * scaleX);
+        int px1 = (int) Math.floor((Math.max(x1, x2) - left) * scaleX);
+        int y0 = (int) Math.ceil(py - half - 0.5f);
+        int y1 = (int) Math.ceil(py + half - 0.5f) - 1;
+        fillRect(px0, y0, px1, y1, color);
+    }
+
+    @Override
+    public float getPixelSize() {
+        return 1 / scaleY;
+    }
+
+    @Override
+    public Bounds getClipBounds(float thickness) {
+        // Half the largest footprint plus a pixel for rounding, measured from the clip's outer edges
+        float pad = Math.max(thickness * thicknessScale, 1) / 2 + 1;
+        float x0 = left + (clipX0 - pad) / scaleX, x1 = left + (clipX1 + 1 + pad) / scaleX;
+        float y0 = top - (clipY0 - pad) / scaleY, y1 = top - (clipY1 + 1 + pad) / scaleY;
+        return new Bounds(Math.min(x0, x1), Math.min(y0, y1), Math.max(x0, x1), Math.max(y0, y1));
+    }
+
+    /**
+     * Fills the inclusive pixel rectangle, clipped to the clip rectangle
+     */
+    private void fillRect(int x0, int y0, int x1, int y1, Color color) {
+        x0 = Math.max(x0, clipX0);
+        y0 = Math.max(y0, clipY0);
+        x1 = Math.min(x1, clipX1);
+        y1 = Math.min(y1, clipY1);
+        if (x0 > x1 || y0 > y1) {
+            return;
+        }
+        fill(x0, y0, x1, y1, color);
+    }
+
+    /**
+     * Writes the inclusive pixel rectangle, already clipped to the framebuffer
+     */
+    protected void fill(int x0, int y0, int x1, int y1, Color color) {
+        int argb = color.getRGB() | 0xff000000;
+        for (int row = y0; row <= y1; row++) {
+            int offset = row * width;
+            Arrays.fill(pixels, offset + x0, offset + x1 + 1, argb);
+        }
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Copy the framebuffer into an ARGB image
+     */
+    public BufferedImage toBufferedImage() {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.getRaster().setDataElements(0, 0, width, height, pixels);
+        return image;
+    }
+}
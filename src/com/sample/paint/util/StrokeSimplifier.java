@@ -0,0 +1,88 @@
+package com.sample.paint.util;
+
+import java.util.Arrays;
+
+/**
+ * Polyline simplification with the Ramer-Douglas-Peucker algorithm
+ */
+public class StrokeSimplifier {
+
+    /**
+     * Drop points that deviate less than the tolerance from the simplified polyline.
+     * The first and last points are always kept.
+     * @param coords interleaved x, y coordinates
+     * @param count number of points in coords
+     * @param tolerance maximum allowed distance in world units; 0 keeps every point
+     * @return interleaved coordinates of the kept points, in a new array of exact length
+     */
+    public static float[] simplify(float[] coords, int count, float tolerance) {
+        if (count <= 2 || tolerance <= 0) {
+            return Arrays.copyOf(coords, count * 2);
+        }
+
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        int kept = 2;
+        float toleranceSquared = tolerance * tolerance;
+
+        // Explicit stack of [first, last] ranges instead of recursion, strokes can be very long
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = count - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            float ax = coords[first * 2], ay = coords[first * 2 + 1];
+            float bx = coords[last * 2], by = coords[last * 2 + 1];
+
+            int farthest = -1;
+            float maxDistance = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                float distance = segmentDistanceSquared(coords[i * 2], coords[i * 2 + 1], ax, ay, bx, by);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                kept++;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        float[] result = new float[kept * 2];
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                result[j++] = coords[i * 2];
+                result[j++] = coords[i * 2 + 1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Squared distance from (px, py) to the segment a-b
+     */
+    public static float segmentDistanceSquared(float px, float py, float ax, float ay, float bx, float by) {
+        float dx = bx - ax;
+        float dy = by - ay;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+
+        float ex = px - (ax + t * dx);
+        float ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+}
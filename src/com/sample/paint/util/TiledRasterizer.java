@@ -0,0 +1,178 @@
+package com.sample.paint.util;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import com.sample.paint.model.Bounds;
+import com.sample.paint.model.Shape;
+
+/**
+ * Multi-core software renderer. The framebuffer is split into square tiles,
+ * each shape is binned into the tiles its padded bounds overlap, and tiles are
+ * rasterized in parallel on a fork/join pool into the shared int[] framebuffer.
+ * Every tile draws its shapes in painter's order and only writes its own pixels,
+ * so the result is identical to rasterizing the whole list on one thread. The
+ * tile's clip bounds keep the routines from generating samples outside it, so a
+ * shape spanning many tiles is not rasterized in full by each of them.
+ */
+public class TiledRasterizer {
+    public static final int DEFAULT_TILE_SIZE = 128;
+
+    private final ForkJoinPool pool;
+    private final int tileSize;
+
+    public TiledRasterizer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * @param tileSize edge length of a tile in pixels
+     */
+    public TiledRasterizer(ForkJoinPool pool, int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Invalid tile size: " + tileSize);
+        }
+        this.pool = pool;
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Clear the framebuffer and draw the shapes overlapping the view, bottom to top
+     * @param pixels ARGB framebuffer of width * height pixels, row 0 at the top
+     * @param view world-space rectangle mapped onto the framebuffer
+     */
+    public void render(int[] pixels, int width, int height, Bounds view,
+            List<? extends Shape> shapes, Color background) {
+        render(pixels, width, height, view, shapes, background, 1);
+    }
+
+    /**
+     * Clear the framebuffer and draw the shapes overlapping the view, bottom to top
+     * @param thicknessScale stroke thickness multiplier, at least 1
+     */
+    public void render(int[] pixels, int width, int height, Bounds view,
+            List<? extends Shape> shapes, Color background, float thicknessScale) {
+        Shape[] drawOrder = shapes.toArray(new Shape[0]);
+        Tiles tiles = new Tiles(width, height, view, Math.max(thicknessScale, 1));
+        tiles.bin(drawOrder);
+        pool.invoke(new TileTask(tiles, drawOrder, pixels, background, 0, tiles.count()));
+    }
+
+    /**
+     * Tile grid with the indices of the shapes overlapping each tile, in draw order
+     */
+    private class Tiles {
+        final int width;
+        final int height;
+        final Bounds view;
+        final float thicknessScale;
+        final int columns;
+        final int rows;
+        final int[][] bins;
+        final int[] binSizes;
+
+        Tiles(int width, int height, Bounds view, float thicknessScale) {
+            this.width = width;
+            this.height = height;
+            this.view = view;
+            this.thicknessScale = thicknessScale;
+            columns = (width + tileSize - 1) / tileSize;
+            rows = (height + tileSize - 1) / tileSize;
+            bins = new int[columns * rows][];
+            binSizes = new int[columns * rows];
+        }
+
+        int count() {
+            return bins.length;
+        }
+
+        void bin(Shape[] shapes) {
+            float scaleX = width / view.getWidth();
+            float scaleY = height / view.getHeight();
+            // Scaling the pixel size by the thickness scale (at least 1) over-pads scaled strokes
+            float padPixelSize = thicknessScale / scaleY;
+
+            for (int i = 0; i < shapes.length; i++) {
+                Shape shape = shapes[i];
+                if (!shape.intersects(view, padPixelSize)) {
+                    continue;
+                }
+                // Pixel rectangle covered by the shape including its stroke
+                Bounds bounds = shape.getBounds();
+                float pad = shape.getStrokePadding(padPixelSize);
+                int column0 = tileIndex((bounds.minX - pad - view.minX) * scaleX, columns);
+                int column1 = tileIndex((bounds.maxX + pad - view.minX) * scaleX, columns);
+                int row0 = tileIndex((view.maxY - bounds.maxY - pad) * scaleY, rows);
+                int row1 = tileIndex((view.maxY - bounds.minY + pad) * scaleY, rows);
+
+                for (int row = row0; row <= row1; row++) {
+                    for (int column = column0; column <= column1; column++) {
+                        add(row * columns + column, i);
+                    }
+                }
+            }
+        }
+
+        private int tileIndex(float pixel, int tileCount) {
+            int index = (int) Math.floor(pixel / tileSize);
+            return Math.max(0, Math.min(index, tileCount - 1));
+        }
+
+        private void add(int tile, int shapeIndex) {
+            int[] bin = bins[tile];
+            if (bin == null) {
+                bin = bins[tile] = new int[8];
+            } else if (binSizes[tile] == bin.length) {
+                bin = bins[tile] = Arrays.copyOf(bin, bin.length * 2);
+            }
+            bin[binSizes[tile]++] = shapeIndex;
+        }
+    }
+
+    /**
+     * Renders a range of tiles, splitting it in halves until single tiles remain
+     */
+    private class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Tiles tiles;
+        private final Shape[] shapes;
+        private final int[] pixels;
+        private final Color background;
+        private final int from;
+        private final int to;
+
+        TileTask(Tiles tiles, Shape[] shapes, int[] pixels, Color background, int from, int to) {
+            this.tiles = tiles;
+            this.shapes = shapes;
+            this.pixels = pixels;
+            this.background = background;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(tiles, shapes, pixels, background, from, middle),
+                        new TileTask(tiles, shapes, pixels, background, middle, to));
+                return;
+            }
+
+            int tile = from;
+            SoftwareRasterTarget target = new SoftwareRasterTarget(pixels, tiles.width, tiles.height);
+            target.setView(tiles.view.minX, tiles.view.maxX, tiles.view.minY, tiles.view.maxY);
+            target.setThicknessScale(tiles.thicknessScale);
+            target.setClip((tile % tiles.columns) * tileSize, (tile / tiles.columns) * tileSize, tileSize, tileSize);
+            target.clear(background);
+
+            int[] bin = tiles.bins[tile];
+            for (int i = 0; i < tiles.binSizes[tile]; i++) {
+                shapes[bin[i]].draw(target);
+            }
+        }
+    }
+}